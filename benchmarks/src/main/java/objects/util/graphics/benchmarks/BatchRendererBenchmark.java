@@ -0,0 +1,103 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.Collection;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+/**
+ * Reports views rendered a second against the number of worker threads.
+ * Run as a main class, it reports each thread count's throughput against one thread as well:
+ * 	BatchRendererBenchmark [JMH options]
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class BatchRendererBenchmark {
+	private static final int VIEWS = 32;
+	
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+	
+	@Param({"1000", "10000"})
+	public int triangles;
+	
+	@Param({"320x240"})
+	public String resolution;
+	
+	private BatchRenderer batch;
+	private Vector[] positions;
+	private Rotation[] orientations;
+	
+	@Setup
+	public void setup() {
+		String[] dimensions = resolution.split("x");
+		int width = Integer.parseInt(dimensions[0]);
+		int height = Integer.parseInt(dimensions[1]);
+		SceneGenerator generator = new SceneGenerator(27);
+		generator.setTriangleCount(triangles);
+		generator.setFieldOfView(1.57);
+		generator.setLights(1, SceneGenerator.LightType.PYRAMID);
+		batch = new BatchRenderer(width, height, 1.57, 0.1, 1000, () -> new DirectShader(0.15));
+		batch.setThreads(threads);
+		batch.feed(generator.generate());
+		// Views panning across the generated scene from around where its camera stands
+		positions = new Vector[VIEWS];
+		orientations = new Rotation[VIEWS];
+		for (int i = 0; i < VIEWS; i++) {
+			double angle = 0.6*i/(VIEWS - 1) - 0.3;
+			positions[i] = new Vector(new double[] {Math.sin(angle), 0, 0});
+			orientations[i] = new Rotation().rotatedClone(new Vector(1), angle);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		// Shuts the workers' pool down
+		batch.setThreads(1);
+	}
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(new CommandLineOptions(args));
+		options.include(BatchRendererBenchmark.class.getSimpleName());
+		Collection<RunResult> results = new Runner(options.build()).run();
+		// Scores by triangle count and resolution, then by thread count
+		TreeMap<String, TreeMap<Integer, Double>> scores = new TreeMap<>();
+		for (RunResult result:results) {
+			String scene = result.getParams().getParam("triangles") + " triangles at " + result.getParams().getParam("resolution");
+			int threads = Integer.parseInt(result.getParams().getParam("threads"));
+			scores.computeIfAbsent(scene, key -> new TreeMap<>()).put(threads, result.getPrimaryResult().getScore());
+		}
+		System.out.println();
+		System.out.printf("%-28s %8s %12s %8s%n", "scene", "threads", "views/s", "speedup");
+		for (String scene:scores.keySet()) {
+			TreeMap<Integer, Double> byThreads = scores.get(scene);
+			Double baseline = byThreads.get(1);
+			for (int threads:byThreads.keySet()) {
+				double score = byThreads.get(threads);
+				System.out.printf("%-28s %8d %12.1f %8s%n", scene, threads, score, baseline == null ? "-" : String.format("%.2fx", score/baseline));
+			}
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(VIEWS)
+	public void render() {
+		// The views are packed into the workers' pixels either way, so the listener can drop them
+		batch.render(positions, orientations, (index, pixels) -> {});
+	}
+}
@@ -0,0 +1,72 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class CameraBenchmark {
+	@Param({"100", "1000", "10000"})
+	public int triangles;
+	
+	@Param({"1", "4"})
+	public int lights;
+	
+	@Param({"PYRAMID", "POINT", "SPOT", "DIRECTIONAL"})
+	public SceneGenerator.LightType lightType;
+	
+	@Param({"2"})
+	public double depthComplexity;
+	
+	@Param({"320x240", "800x600"})
+	public String resolution;
+	
+	@Param({"false", "true"})
+	public boolean vectorized;
+	
+	@Param({"false", "true"})
+	public boolean classifying;
+	
+	private Camera camera;
+	private int[] pixels;
+	
+	@Setup
+	public void setup() {
+		String[] dimensions = resolution.split("x");
+		int width = Integer.parseInt(dimensions[0]);
+		int height = Integer.parseInt(dimensions[1]);
+		SceneGenerator generator = new SceneGenerator(27);
+		generator.setTriangleCount(triangles);
+		generator.setDepthComplexity(depthComplexity);
+		generator.setFieldOfView(1.57);
+		generator.setLights(lights, lightType);
+		camera = new Camera(width, height, 1.57, 0.1, 1000, new DirectShader(0.15));
+		Scene scene = generator.generate();
+		for (Light light:scene.lights) {
+			light.setClassifying(classifying);
+		}
+		camera.feed(scene);
+		camera.setVectorized(vectorized);
+		pixels = new int[width*height];
+	}
+	
+	@Benchmark
+	public void render() {
+		camera.render();
+	}
+	
+	@Benchmark
+	public int[] renderAndLoad() {
+		camera.render();
+		camera.load(pixels);
+		return pixels;
+	}
+}
@@ -0,0 +1,141 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class ColorTextureBenchmark {
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+	
+	// Height of the triangle on screen, in pixels
+	@Param({"16", "128", "512"})
+	public int size;
+	
+	@Param({"plain", "direct"})
+	public String shading;
+	
+	@Param({"false", "true"})
+	public boolean vectorized;
+	
+	@Param({"DOUBLE", "FLOAT"})
+	public Precision precision;
+	
+	// Each write draws the triangle a slice nearer than the last, so that it passes the depth test
+	// without a clear in between. Only once the nearest slice is drawn is the depth buffer cleared,
+	// over the triangle's bounds, which leaves the clear a small share of the writes it serves
+	private static final int SLICES = 1024;
+	
+	private ColorTexture texture;
+	private Shader shader;
+	private Plane[] worlds;
+	private Plane[] projecteds;
+	private Plane[][] screens;
+	private int slice;
+	private int left;
+	private int top;
+	private int right;
+	private int bottom;
+	private Rotation orientation;
+	private Vector displacement;
+	private double resolutionScalar;
+	private DepthBuffer zBuffer;
+	private Span span;
+	private int pixelsPerWrite;
+	
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class FillRate {
+		public long pixels;
+		
+		@Setup(Level.Iteration)
+		public void clear() {
+			pixels = 0;
+		}
+	}
+	
+	@Setup
+	public void setup() {
+		resolutionScalar = Math.max(WIDTH, HEIGHT)/(2*Math.tan(Math.toRadians(45)));
+		orientation = new Rotation();
+		displacement = new Vector();
+		Vector screenCenter = new Vector(new double[] {WIDTH/2, HEIGHT/2, 0});
+		worlds = new Plane[SLICES];
+		projecteds = new Plane[SLICES];
+		screens = new Plane[SLICES][];
+		for (int i = 0; i < SLICES; i++) {
+			// From a depth of 10 to 5, scaled to stay the same size on screen
+			double depth = 10 - 5.0*i/SLICES;
+			double half = depth/2*size/resolutionScalar;
+			worlds[i] = new Plane(new double[][] {{-half, -half, depth}, {half, -half, depth}, {0, half, depth}});
+			projecteds[i] = worlds[i].subtract(displacement).project(orientation).scale(resolutionScalar);
+			projecteds[i].testForUnflattening();
+			screens[i] = projecteds[i].clip(0.1)[0].flatten().add(screenCenter).cut();
+		}
+		texture = new ColorTexture(new double[] {0.5, 0.75, 1}, 2, 8);
+		if (shading.equals("plain")) {
+			shader = new PlainShader();
+		} else {
+			shader = new DirectShader(0.1);
+			shader.preload(new Plane[] {worlds[0]}, new Light[] {}, displacement);
+		}
+		shader.reshape(FrameBuffer.create(precision, WIDTH, HEIGHT));
+		zBuffer = DepthBuffer.create(precision, WIDTH, HEIGHT);
+		span = new Span(WIDTH);
+		if (!vectorized) {
+			span.backend = null;
+		}
+		
+		zBuffer.clear(1000);
+		write(0);
+		left = WIDTH;
+		top = HEIGHT;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if (zBuffer.get(y*WIDTH + x) < 1000) {
+					pixelsPerWrite++;
+					left = Math.min(left, x);
+					right = Math.max(right, x + 1);
+					top = Math.min(top, y);
+					bottom = Math.max(bottom, y + 1);
+				}
+			}
+		}
+		// A pixel of margin for slices that round onto a neighbouring row or column
+		left = Math.max(left - 1, 0);
+		top = Math.max(top - 1, 0);
+		right = Math.min(right + 1, WIDTH);
+		bottom = Math.min(bottom + 1, HEIGHT);
+	}
+	
+	@Setup(Level.Iteration)
+	public void clearDepth() {
+		zBuffer.clear(1000);
+		slice = 0;
+	}
+	
+	@Benchmark
+	public void write(FillRate fillRate) {
+		if (slice == SLICES) {
+			zBuffer.clear(1000, left, top, right, bottom);
+			slice = 0;
+		}
+		write(slice++);
+		fillRate.pixels += pixelsPerWrite;
+	}
+	
+	private void write(int i) {
+		for (Plane screen:screens[i]) {
+			texture.write(screen, projecteds[i], worlds[i], orientation, displacement, WIDTH, HEIGHT, resolutionScalar, zBuffer, span, shader);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirectShaderBenchmark {
+	private static final int POINTS = 1024;
+	
+	@Param({"1", "4", "16"})
+	public int lights;
+	
+	private DirectShader shader;
+	private Vector[] points;
+	private Vector normal;
+	private double[] rgb;
+	
+	@Setup
+	public void setup() {
+		SceneGenerator generator = new SceneGenerator(27);
+		generator.setTriangleCount(200);
+		generator.setLights(lights, SceneGenerator.LightType.PYRAMID);
+		Scene scene = generator.generate();
+		Plane[] planes = scene.planes;
+		shader = new DirectShader(0.1);
+		shader.reshape(FrameBuffer.create(Precision.DOUBLE, POINTS, 1));
+		shader.preload(planes, scene.lights, new Vector());
+		Random random = new Random(27);
+		points = new Vector[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			points[i] = planes[0].getPoint(random.nextDouble()*0.5, random.nextDouble()*0.5);
+		}
+		normal = planes[0].getNormal();
+		rgb = new double[] {0.5, 0.75, 1};
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void draw() {
+		for (int i = 0; i < POINTS; i++) {
+			double[] point = points[i].getComponents();
+			shader.draw(i, point[0], point[1], point[2], normal, rgb, 2, 8);
+		}
+	}
+}
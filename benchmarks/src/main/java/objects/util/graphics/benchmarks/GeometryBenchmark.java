@@ -0,0 +1,65 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryBenchmark {
+	private Vector a;
+	private Vector b;
+	private Rotation rotation;
+	private Rotation other;
+	
+	@Setup
+	public void setup() {
+		a = new Vector(new double[] {1.5, -2.25, 3});
+		b = new Vector(new double[] {-0.5, 4, 0.75});
+		rotation = new Rotation(new double[] {0.3, -0.7, 1.1}, 2, 1);
+		other = new Rotation(Math.toRadians(15), 0);
+	}
+	
+	@Benchmark
+	public Vector vectorAdd() {
+		return a.add(b);
+	}
+	
+	@Benchmark
+	public Vector vectorCross() {
+		return a.cross(b);
+	}
+	
+	@Benchmark
+	public double vectorDot() {
+		return a.dot(b);
+	}
+	
+	@Benchmark
+	public Vector vectorNormalize() {
+		Vector c = a.clone();
+		c.normalize();
+		return c;
+	}
+	
+	@Benchmark
+	public Vector rotationDot() {
+		return rotation.dot(a);
+	}
+	
+	@Benchmark
+	public Vector rotationRotatedClone() {
+		return rotation.rotatedClone(a);
+	}
+	
+	@Benchmark
+	public Rotation rotationCompose() {
+		return other.rotatedClone(rotation);
+	}
+}
@@ -0,0 +1,66 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlaneBenchmark {
+	// Number of the projected triangle's points in front of the near plane
+	@Param({"1", "2", "3"})
+	public int pointsInFrustrum;
+	
+	private Plane world;
+	private Plane projected;
+	private Plane screen;
+	private Rotation orientation;
+	private Vector displacement;
+	private Vector screenCenter;
+	
+	@Setup
+	public void setup() {
+		double[][] points = new double[][] {{-2, -1, 10}, {2, -1, 10}, {0, 1, 10}};
+		for (int i = pointsInFrustrum; i < 3; i++) {
+			points[i][2] = -5;
+		}
+		world = new Plane(points);
+		orientation = new Rotation(Math.toRadians(15), 0);
+		displacement = new Vector(new double[] {0.25, 0.5, 0});
+		screenCenter = new Vector(new double[] {400, 300, 0});
+		projected = world.subtract(displacement).project(orientation).scale(800);
+		projected.testForUnflattening();
+		screen = projected.clip(0.1)[0].flatten().add(screenCenter);
+	}
+	
+	@Benchmark
+	public Plane project() {
+		return world.subtract(displacement).project(orientation).scale(800);
+	}
+	
+	@Benchmark
+	public boolean testForUnflattening() {
+		return projected.testForUnflattening();
+	}
+	
+	@Benchmark
+	public Plane[] clip() {
+		return projected.clip(0.1);
+	}
+	
+	@Benchmark
+	public Plane flatten() {
+		return projected.flatten().add(screenCenter);
+	}
+	
+	@Benchmark
+	public Plane[] cut() {
+		return screen.cut();
+	}
+}
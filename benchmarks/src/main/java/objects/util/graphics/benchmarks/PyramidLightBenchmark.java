@@ -0,0 +1,90 @@
+package objects.util.graphics.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PyramidLightBenchmark {
+	private static final int POINTS = 1024;
+	
+	@Param({"256", "1024"})
+	public int resolution;
+	
+	@Param({"100", "1000"})
+	public int triangles;
+	
+	@Param({"DOUBLE", "FLOAT"})
+	public Precision precision;
+	
+	// Packs the shadow map into 16 bit codes, unless none
+	@Param({"none", "REVERSE"})
+	public String encoding;
+	
+	@Param({"ROW_MAJOR", "TILED", "MORTON"})
+	public DepthLayout layout;
+	
+	private PyramidLight light;
+	private Plane[] planes;
+	private Vector[] points;
+	private Vector[] sweep;
+	
+	@Setup
+	public void setup() {
+		SceneGenerator generator = new SceneGenerator(27);
+		generator.setTriangleCount(triangles);
+		planes = generator.generate().planes;
+		light = new PyramidLight(resolution, resolution, Math.toRadians(120), 0.2, 1000, new double[] {1, 1, 1}, 100, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 15, 30}));
+		light.setPrecision(precision);
+		if (!encoding.equals("none")) {
+			light.setDepthEncoding(DepthEncoding.valueOf(encoding), 16);
+		}
+		light.setDepthLayout(layout);
+		light.cast(planes);
+		Random random = new Random(27);
+		points = new Vector[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			points[i] = planes[random.nextInt(triangles)].getPoint(random.nextDouble()*0.5, random.nextDouble()*0.5);
+		}
+		// A grid across the ground below the light in scanline order, the coherent pattern of a
+		// camera shading a surface, spread over most of the shadow map
+		int side = (int) Math.sqrt(POINTS);
+		sweep = new Vector[side*side];
+		for (int i = 0; i < side; i++) {
+			for (int j = 0; j < side; j++) {
+				sweep[i*side + j] = new Vector(new double[] {-40 + 80.0*j/side, 0, -10 + 80.0*i/side});
+			}
+		}
+	}
+	
+	@Benchmark
+	public void castPlanes() {
+		light.cast(planes);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void castPoints(Blackhole blackhole) {
+		for (Vector point:points) {
+			blackhole.consume(light.cast(point));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void castSweep(Blackhole blackhole) {
+		for (Vector point:sweep) {
+			blackhole.consume(light.cast(point));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package objects.util.graphics.benchmarks;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+import objects.util.graphics.*;
+
+/**
+ * Renders synthetic scenes while sweeping one generator dimension at a time and reports the median
+ * 	frame time against each dimension as a CSV file and a text plot.
+ * For numeric dimensions the slope of log(frame time) against log(dimension) is reported as well; it
+ * 	is the exponent of the observed asymptotic behaviour, so a change from linear to quadratic
+ * 	scaling shows up as a jump from about 1 to about 2 even when absolute times are noisy.
+ * 
+ * Usage: ScalingReport [--quick] [--csv scaling.csv] [--baseline scaling.properties]
+ * A baseline file maps dimension names to the largest acceptable exponent; any dimension whose
+ * 	measured exponent exceeds it makes the report exit with status 1.
+ */
+public class ScalingReport {
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 240;
+	private static final int WARMUP_FRAMES = 2;
+	private static final int MEASURED_FRAMES = 5;
+	private static final int BAR_WIDTH = 50;
+	
+	private record Sample(String dimension, String value, double x, double milliseconds) {}
+	
+	public static void main(String[] args) throws IOException {
+		boolean quick = false;
+		String csvPath = "scaling.csv";
+		String baselinePath = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--quick" -> quick = true;
+				case "--csv" -> csvPath = args[++i];
+				case "--baseline" -> baselinePath = args[++i];
+				default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+			}
+		}
+		
+		List<Sample> samples = new ArrayList<>();
+		sweep(samples, "triangles", quick ? new double[] {100, 1000, 10000} : new double[] {100, 1000, 10000, 100000}, 
+			(generator, value) -> generator.setTriangleCount((int)(double)value));
+		sweep(samples, "triangleSize", new double[] {0.25, 0.5, 1, 2, 4}, 
+			(generator, value) -> generator.setTriangleSize(value, value, SceneGenerator.SizeDistribution.FIXED));
+		sweep(samples, "depthComplexity", new double[] {1, 2, 4, 8}, 
+			(generator, value) -> generator.setDepthComplexity(value));
+		sweep(samples, "lights", quick ? new double[] {1, 5, 10} : new double[] {1, 5, 10, 50}, 
+			(generator, value) -> generator.setLights((int)(double)value, SceneGenerator.LightType.PYRAMID));
+		for (SceneGenerator.LightType type:SceneGenerator.LightType.values()) {
+			SceneGenerator generator = defaultGenerator();
+			generator.setLights(1, type);
+			samples.add(new Sample("lightType", type.name(), Double.NaN, measure(generator.generate())));
+		}
+		
+		try (PrintWriter csv = new PrintWriter(csvPath)) {
+			csv.println("dimension,value,frameMillis");
+			for (Sample sample:samples) {
+				csv.println(sample.dimension() + "," + sample.value() + "," + sample.milliseconds());
+			}
+		}
+		
+		Properties baseline = new Properties();
+		if (baselinePath != null) {
+			try (FileReader reader = new FileReader(baselinePath)) {
+				baseline.load(reader);
+			}
+		}
+		boolean regressed = false;
+		for (String dimension:samples.stream().map(Sample::dimension).distinct().toList()) {
+			List<Sample> series = samples.stream().filter(sample -> sample.dimension().equals(dimension)).toList();
+			plot(dimension, series);
+			if (!Double.isNaN(series.get(0).x())) {
+				double exponent = exponent(series);
+				String limit = baseline.getProperty(dimension);
+				boolean exceeded = limit != null && exponent > Double.parseDouble(limit);
+				regressed |= exceeded;
+				System.out.printf("  scaling exponent %.2f%s%n", exponent, limit == null ? "" : (exceeded ? " EXCEEDS " : " within ") + limit);
+			}
+			System.out.println();
+		}
+		System.out.println("Wrote " + csvPath);
+		if (regressed) {
+			System.exit(1);
+		}
+	}
+	
+	private static SceneGenerator defaultGenerator() {
+		SceneGenerator generator = new SceneGenerator(28);
+		generator.setFieldOfView(1.57);
+		return generator;
+	}
+	
+	private static void sweep(List<Sample> samples, String dimension, double[] values, BiConsumer<SceneGenerator, Double> apply) {
+		for (double value:values) {
+			SceneGenerator generator = defaultGenerator();
+			apply.accept(generator, value);
+			String label = value == Math.rint(value) ? Long.toString((long)value) : Double.toString(value);
+			samples.add(new Sample(dimension, label, value, measure(generator.generate())));
+			System.err.println(dimension + " " + label + " done");
+		}
+	}
+	
+	private static double measure(Scene scene) {
+		Camera camera = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15));
+		camera.feed(scene);
+		int[] pixels = new int[WIDTH*HEIGHT];
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			camera.render();
+			camera.load(pixels);
+		}
+		double[] times = new double[MEASURED_FRAMES];
+		for (int i = 0; i < MEASURED_FRAMES; i++) {
+			long start = System.nanoTime();
+			camera.render();
+			camera.load(pixels);
+			times[i] = (System.nanoTime() - start)/1e6;
+		}
+		Arrays.sort(times);
+		return times[MEASURED_FRAMES/2];
+	}
+	
+	private static void plot(String dimension, List<Sample> series) {
+		double max = series.stream().mapToDouble(Sample::milliseconds).max().orElse(1);
+		System.out.println(dimension + " (median frame ms)");
+		for (Sample sample:series) {
+			int length = (int)Math.round(BAR_WIDTH*sample.milliseconds()/max);
+			System.out.printf("%12s |%-" + BAR_WIDTH + "s %10.2f%n", sample.value(), "#".repeat(length), sample.milliseconds());
+		}
+	}
+	
+	// Least squares slope of log(frame time) against log(dimension)
+	private static double exponent(List<Sample> series) {
+		int n = series.size();
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		for (Sample sample:series) {
+			double x = Math.log(sample.x());
+			double y = Math.log(sample.milliseconds());
+			sumX += x;
+			sumY += y;
+			sumXX += x*x;
+			sumXY += x*y;
+		}
+		return (n*sumXY - sumX*sumY)/(n*sumXX - sumX*sumX);
+	}
+}
@@ -0,0 +1,319 @@
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a fixed set of reference scenes through Camera into in-memory pixel buffers, compares them
+ * 	against the golden images in the golden directory and checks the bytes allocated per frame against
+ * 	the budget and the stored baseline. Median frame times are only reported, since they depend on the
+ * 	machine and its load, unless --timing asks for them to be checked against the stored baseline too.
+ * 
+ * Usage: RegressionHarness [golden directory] [--update] [--timing]
+ * With --update, the golden images and the performance baseline are rewritten from the current build.
+ * The process exits with status 1 when any scene diverges or regresses, which fails the build when the
+ * 	harness runs through "mvn -Pregression verify".
+ */
+public class RegressionHarness {
+	// A pixel differs when any channel is more than CHANNEL_TOLERANCE levels off its golden value,
+	// and a scene diverges when more than PIXEL_TOLERANCE of its pixels differ
+	public static final int CHANNEL_TOLERANCE = 8;
+	public static final double PIXEL_TOLERANCE = 0.005;
+	// A scene regresses when its allocation per frame grows by ALLOCATION_TOLERANCE or, under
+	// --timing, its median frame time by TIME_TOLERANCE (plus TIME_SLACK_MILLIS to absorb timer
+	// noise on tiny frames)
+	public static final double TIME_TOLERANCE = 0.5;
+	public static final double TIME_SLACK_MILLIS = 2;
+	public static final double ALLOCATION_TOLERANCE = 0.1;
+	public static final long ALLOCATION_SLACK_BYTES = 4096;
+	// Every reference scene is static, so once warmed up a frame must not allocate at all
+	public static final long ALLOCATION_BUDGET_BYTES = 0;
+	
+	private static final int WIDTH = 200;
+	private static final int HEIGHT = 150;
+	// Warmed up for a time as well as a number of frames, so that scenes which run after a
+	// different buffer type still get recompiled before they are measured
+	private static final int WARMUP_FRAMES = 30;
+	private static final long WARMUP_MILLIS = 1000;
+	// The Vector API only stops allocating once C2 has compiled it, which takes longer to reach
+	private static final int VECTOR_WARMUP_FRAMES = 300;
+	private static final int MEASURED_FRAMES = 15;
+	
+	private record Reference(String name, Supplier<Camera> camera) {}
+	
+	public record Result(String name, int[] pixels, double frameMillis, long allocatedBytes) {}
+	
+	public static void main(String[] args) throws IOException {
+		File golden = new File("golden");
+		boolean update = false;
+		boolean timing = Boolean.getBoolean("regression.timing");
+		for (String arg:args) {
+			if (arg.equals("--update")) {
+				update = true;
+			} else if (arg.equals("--timing")) {
+				timing = true;
+			} else {
+				golden = new File(arg);
+			}
+		}
+		System.exit(run(golden, update, timing) ? 0 : 1);
+	}
+	
+	public static ArrayList<Reference> references() {
+		ArrayList<Reference> references = new ArrayList<>();
+		references.add(new Reference("display", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.feed(Tests.displayScene());
+			return cam;
+		}));
+		references.add(new Reference("display-float", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.setPrecision(Precision.FLOAT);
+			Scene scene = Tests.displayScene();
+			for (Light light:scene.lights) {
+				light.setPrecision(Precision.FLOAT);
+				light.setDepthLayout(DepthLayout.MORTON);
+			}
+			cam.feed(scene);
+			return cam;
+		}));
+		references.add(new Reference("display-packed", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.setDepthEncoding(DepthEncoding.NORMALIZED, 24);
+			Scene scene = Tests.displayScene();
+			for (Light light:scene.lights) {
+				light.setDepthEncoding(DepthEncoding.REVERSE, 16);
+				light.setDepthLayout(DepthLayout.TILED);
+			}
+			cam.feed(scene);
+			return cam;
+		}));
+		references.add(new Reference("display-direct", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.setDirectOutput(new ToneCurve(1));
+			cam.feed(Tests.displayScene());
+			return cam;
+		}));
+		references.add(new Reference("display-hdr", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.setPrecision(Precision.FLOAT);
+			// One thread, since handing bands to a pool allocates every frame
+			ToneMapper mapper = new ToneMapper(new ToneCurve(2.2, 16));
+			mapper.setAdaptive(true);
+			mapper.setThreads(1);
+			cam.setToneMapper(mapper);
+			cam.feed(Tests.displayScene());
+			return cam;
+		}));
+		references.add(new Reference("display-baked", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			Scene scene = Tests.displayScene();
+			cam.feed(scene);
+			cam.setLightmaps(new LightmapBaker(8).bake(scene.planes, Tests.staticPlanes(scene), scene.lights));
+			return cam;
+		}));
+		references.add(new Reference("display-classified", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			Scene scene = Tests.displayScene();
+			for (Light light:scene.lights) {
+				light.setClassifying(true);
+			}
+			cam.feed(scene);
+			return cam;
+		}));
+		references.add(new Reference("display-sun", () -> {
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			Scene scene = Tests.displayScene();
+			Vector direction = new Vector(new double[] {0.3, -1, 0.4});
+			direction.normalize();
+			DirectionalLight sun = new DirectionalLight(512, new double[] {1, 1, 1}, 1, new Rotation(direction));
+			sun.setCascades(3);
+			cam.feed(scene.planes, scene.textures, new Light[] {sun});
+			return cam;
+		}));
+		references.add(new Reference("generated-pyramid", () -> {
+			SceneGenerator generator = new SceneGenerator(29);
+			generator.setTriangleCount(300);
+			generator.setFieldOfView(1.57);
+			generator.setLights(2, SceneGenerator.LightType.PYRAMID);
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.1));
+			cam.feed(generator.generate());
+			return cam;
+		}));
+		references.add(new Reference("generated-point", () -> {
+			SceneGenerator generator = new SceneGenerator(2929);
+			generator.setTriangleCount(200);
+			generator.setTriangleSize(0.25, 8, SceneGenerator.SizeDistribution.LOG_NORMAL);
+			generator.setDepthComplexity(4);
+			generator.setFieldOfView(1.57);
+			generator.setLights(1, SceneGenerator.LightType.POINT);
+			generator.setShadowResolution(128);
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.1));
+			cam.feed(generator.generate());
+			return cam;
+		}));
+		references.add(new Reference("generated-scheduled", () -> {
+			SceneGenerator generator = new SceneGenerator(2929);
+			generator.setTriangleCount(300);
+			generator.setFieldOfView(1.57);
+			generator.setLights(4, SceneGenerator.LightType.POINT);
+			generator.setShadowResolution(512);
+			ShadowScheduler scheduler = new ShadowScheduler();
+			scheduler.setTriangleBudget(300*6);
+			DirectShader shader = new DirectShader(0.1);
+			shader.setShadowScheduler(scheduler);
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, shader);
+			cam.feed(generator.generate());
+			return cam;
+		}));
+		references.add(new Reference("generated-spot", () -> {
+			SceneGenerator generator = new SceneGenerator(292);
+			generator.setTriangleCount(300);
+			generator.setFieldOfView(1.57);
+			generator.setLights(40, SceneGenerator.LightType.SPOT);
+			generator.setShadowResolution(64);
+			Camera cam = new Camera(WIDTH, HEIGHT, 1.57, 0.1, 1000, new DirectShader(0.1));
+			cam.feed(generator.generate());
+			return cam;
+		}));
+		return references;
+	}
+	
+	public static Result render(String name, Camera cam) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		int[] pixels = new int[WIDTH*HEIGHT];
+		int warmup = cam.isVectorized() ? VECTOR_WARMUP_FRAMES : WARMUP_FRAMES;
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS*1000000;
+		for (int i = 0; i < warmup || System.nanoTime() < warmupEnd; i++) {
+			cam.render();
+			cam.load(pixels);
+		}
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < MEASURED_FRAMES; i++) {
+			cam.render();
+			cam.load(pixels);
+		}
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		double[] times = new double[MEASURED_FRAMES];
+		for (int i = 0; i < MEASURED_FRAMES; i++) {
+			long start = System.nanoTime();
+			cam.render();
+			cam.load(pixels);
+			times[i] = (System.nanoTime() - start)/1e6;
+		}
+		Arrays.sort(times);
+		// Rounded up, so that any allocation at all shows up in the per-frame figure
+		return new Result(name, pixels, times[MEASURED_FRAMES/2], (allocated + MEASURED_FRAMES - 1)/MEASURED_FRAMES);
+	}
+	
+	public static boolean run(File golden, boolean update, boolean timing) throws IOException {
+		if (update) {
+			golden.mkdirs();
+		} else if (!golden.isDirectory()) {
+			throw new FileNotFoundException("No golden directory at " + golden.getAbsolutePath());
+		}
+		File performanceFile = new File(golden, "performance.properties");
+		Properties performance = new Properties();
+		if (performanceFile.exists()) {
+			try (FileReader reader = new FileReader(performanceFile)) {
+				performance.load(reader);
+			}
+		}
+		
+		boolean passed = true;
+		for (Reference reference:references()) {
+			Result result = render(reference.name(), reference.camera().get());
+			File imageFile = new File(golden, reference.name() + ".png");
+			String timeKey = reference.name() + ".frameMillis";
+			String allocationKey = reference.name() + ".allocatedBytes";
+			if (update) {
+				ImageIO.write(toImage(result.pixels()), "png", imageFile);
+				performance.setProperty(timeKey, String.format("%.3f", result.frameMillis()));
+				performance.setProperty(allocationKey, Long.toString(result.allocatedBytes()));
+				System.out.printf("%-20s updated (%.3f ms, %d bytes per frame)%n", reference.name(), result.frameMillis(), result.allocatedBytes());
+				continue;
+			}
+			
+			ArrayList<String> failures = new ArrayList<>();
+			if (!imageFile.exists()) {
+				failures.add("no golden image at " + imageFile);
+			} else {
+				int[] expected = fromImage(ImageIO.read(imageFile));
+				double divergence = divergence(expected, result.pixels());
+				if (divergence > PIXEL_TOLERANCE) {
+					failures.add(String.format("%.2f%% of pixels differ from the golden image", divergence*100));
+					ImageIO.write(toImage(result.pixels()), "png", new File(golden, reference.name() + ".actual.png"));
+				}
+			}
+			if (timing && performance.containsKey(timeKey)) {
+				double baseline = Double.parseDouble(performance.getProperty(timeKey));
+				if (result.frameMillis() > baseline*(1 + TIME_TOLERANCE) + TIME_SLACK_MILLIS) {
+					failures.add(String.format("frame time %.3f ms regressed from %.3f ms", result.frameMillis(), baseline));
+				}
+			}
+			if (result.allocatedBytes() > ALLOCATION_BUDGET_BYTES) {
+				failures.add(String.format("allocation %d bytes per frame exceeds the budget of %d bytes", result.allocatedBytes(), ALLOCATION_BUDGET_BYTES));
+			}
+			if (performance.containsKey(allocationKey)) {
+				long baseline = Long.parseLong(performance.getProperty(allocationKey));
+				if (result.allocatedBytes() > baseline*(1 + ALLOCATION_TOLERANCE) + ALLOCATION_SLACK_BYTES) {
+					failures.add(String.format("allocation %d bytes per frame regressed from %d bytes", result.allocatedBytes(), baseline));
+				}
+			}
+			System.out.printf("%-20s %s (%.3f ms, %d bytes per frame)%n", reference.name(), failures.isEmpty() ? "passed" : "FAILED", result.frameMillis(), result.allocatedBytes());
+			for (String failure:failures) {
+				System.out.println("    " + failure);
+			}
+			passed &= failures.isEmpty();
+		}
+		if (update) {
+			try (FileWriter writer = new FileWriter(performanceFile)) {
+				performance.store(writer, "Median frame time and allocated bytes per frame of each reference scene");
+			}
+		}
+		return passed;
+	}
+	
+	public static double divergence(int[] expected, int[] actual) {
+		if (expected.length != actual.length) {
+			return 1;
+		}
+		int differing = 0;
+		for (int i = 0; i < expected.length; i++) {
+			for (int shift = 0; shift <= 16; shift += 8) {
+				int difference = ((expected[i] >> shift) & 255) - ((actual[i] >> shift) & 255);
+				if (Math.abs(difference) > CHANNEL_TOLERANCE) {
+					differing++;
+					break;
+				}
+			}
+		}
+		return differing/(double)expected.length;
+	}
+	
+	private static BufferedImage toImage(int[] pixels) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, WIDTH, HEIGHT, pixels, 0, WIDTH);
+		return image;
+	}
+	
+	private static int[] fromImage(BufferedImage image) {
+		int[] pixels = new int[image.getWidth()*image.getHeight()];
+		image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] &= 0xffffff;
+		}
+		return pixels;
+	}
+}
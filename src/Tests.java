@@ -2,6 +2,7 @@ import objects.util.graphics.*;
 import objects.util.graphics.geometry.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.lang.Math;
 
@@ -27,14 +28,7 @@ public class Tests {
 		System.out.println(attenuation);
 	}
 	
-	public static void testDisplay() {
-		Camera cam = new Camera(800, 600, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
-		cam.setDefaultColor(new double[] {0, 0, 0});
-		UserInterface display = new UserInterface(800, 600);
-		display.addImageSource("camera", cam);
-		display.setFPS(4);
-		display.start();
-		
+	public static Scene displayScene() {
 		double distance = 10;
 		Plane floor0 = new Plane(new double[][] {{-10, -2, -10}, {-10, -2, 10}, {10, -2, -10}});
 		Plane floor1 = new Plane(new double[][] {{10, -2, 10}, {-10, -2, 10}, {10, -2, -10}});
@@ -73,7 +67,30 @@ public class Tests {
 		PointLight centerLight = new PointLight(500, 0.75, 1000, new double[] {1, 1, 1}, 15, new Rotation(), lightDisplacement);
 		Light[] lights = new Light[] {centerLight};
 		
-		cam.feed(planes, textures, lights);
+		return new Scene(planes, textures, lights);
+	}
+	
+	// Flags every plane but the light sources static, and every light
+	public static boolean[] staticPlanes(Scene scene) {
+		boolean[] staticPlanes = new boolean[scene.planes.length];
+		for (int i = 0; i < staticPlanes.length; i++) {
+			staticPlanes[i] = !scene.textures[i].ISLIGHTSOURCE;
+		}
+		for (Light light:scene.lights) {
+			light.isStatic = true;
+		}
+		return staticPlanes;
+	}
+	
+	public static void testDisplay() {
+		Camera cam = new Camera(800, 600, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.setDefaultColor(new double[] {0, 0, 0});
+		UserInterface display = new UserInterface(800, 600);
+		display.addImageSource("camera", cam);
+		display.setFPS(4);
+		display.start();
+		
+		cam.feed(displayScene());
 		
 		double fteenDeg = -Math.toRadians(15);
 		Rotation rTurn = new Rotation(fteenDeg, 1);
@@ -104,6 +121,819 @@ public class Tests {
 		keys.close();
 	}
 	
+	public static void testRegression() {
+		try {
+			if (!RegressionHarness.run(new java.io.File("golden"), false, false)) {
+				throw new AssertionError("Rendering diverged from the golden images or regressed in allocation");
+			}
+		} catch (java.io.IOException e) {
+			throw new AssertionError("Couldn't read the golden images", e);
+		}
+	}
+	
+	public static void testAllocationBudget() {
+		// A static scene has to render without allocating once the render path has warmed up
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.feed(displayScene());
+		int[] pixels = new int[400*300];
+		for (int i = 0; i < 50; i++) {
+			cam.render();
+			cam.load(pixels);
+		}
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 20; i++) {
+			cam.render();
+			cam.load(pixels);
+		}
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		System.out.println("Allocated " + allocated + " bytes in 20 frames");
+		if (allocated > 0) {
+			throw new AssertionError("The steady-state render loop allocated " + allocated + " bytes");
+		}
+	}
+	
+	public static void testLightmapCache() {
+		// A second bake of the same scene has to come from the cache file, unchanged
+		Scene scene = displayScene();
+		boolean[] staticPlanes = staticPlanes(scene);
+		LightmapBaker baker = new LightmapBaker(8);
+		try {
+			java.io.File cache = java.io.File.createTempFile("display", ".lightmaps");
+			cache.delete();
+			long start = System.nanoTime();
+			Lightmap[] baked = baker.bake(scene.planes, staticPlanes, scene.lights, cache);
+			long bakeTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			Lightmap[] loaded = baker.bake(scene.planes, staticPlanes, scene.lights, cache);
+			long loadTime = System.nanoTime() - start;
+			System.out.println("Baked in " + bakeTime/1000000 + " ms, loaded in " + loadTime/1000000 + " ms");
+			for (int i = 0; i < baked.length; i++) {
+				if ((baked[i] == null) != (loaded[i] == null) || 
+						(baked[i] != null && !java.util.Arrays.equals(baked[i].red, loaded[i].red))) {
+					throw new AssertionError("Lightmap " + i + " changed through the cache");
+				}
+			}
+			cache.delete();
+			
+			// Nor may a narrow view that culled the lights' casters first change what's baked
+			Camera cam = new Camera(100, 75, 0.3, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(180), 0), new Vector());
+			cam.feed(scene);
+			cam.render();
+			Lightmap[] rebaked = baker.bake(scene.planes, staticPlanes, scene.lights);
+			for (int i = 0; i < baked.length; i++) {
+				if (baked[i] != null && !java.util.Arrays.equals(baked[i].red, rebaked[i].red)) {
+					throw new AssertionError("Lightmap " + i + " changed after a view culled its lights");
+				}
+			}
+		} catch (java.io.IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	public static void testShadowClasses() {
+		// A plane too small to cover a texel, under a plane that shadows it, can't be classified lit
+		Plane occluder0 = new Plane(new double[][] {{-5, 5, -5}, {-5, 5, 5}, {5, 5, -5}});
+		Plane occluder1 = new Plane(new double[][] {{5, 5, 5}, {-5, 5, 5}, {5, 5, -5}});
+		Plane speck = new Plane(new double[][] {{0.1, 0, 0.1}, {0.101, 0, 0.1}, {0.1, 0, 0.101}});
+		Plane[] planes = new Plane[] {occluder0, occluder1, speck};
+		PyramidLight light = new PyramidLight(64, 64, Math.toRadians(90), 0.2, 1000, new double[] {1, 1, 1}, 15, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 10, 0}));
+		light.setClassifying(true);
+		light.cast(planes);
+		System.out.println("Speck classified " + light.getShadowClass(2) + ", casting " + light.cast(0.1003, 0, 0.1003));
+		if (light.cast(0.1003, 0, 0.1003) != 0) {
+			throw new AssertionError("The speck isn't shadowed");
+		}
+		if (light.getShadowClass(2) == ShadowClass.LIT) {
+			throw new AssertionError("A shadowed plane covering no texels was classified lit");
+		}
+	}
+	
+	public static void testUnfittedCascades() {
+		// Without a view to split, a sun's cascades all hold the same fit, so one map has to do and
+		// light the same as a sun of a single cascade
+		Scene scene = displayScene();
+		DirectionalLight cascaded = new DirectionalLight(256, new double[] {1, 1, 1}, 1, new Rotation(Math.toRadians(60), 0));
+		cascaded.setCascades(4);
+		DirectionalLight single = new DirectionalLight(256, new double[] {1, 1, 1}, 1, new Rotation(Math.toRadians(60), 0));
+		cascaded.cast(scene.planes);
+		single.cast(scene.planes);
+		for (double x = -10; x <= 10; x += 0.5) {
+			for (double z = -10; z <= 10; z += 0.5) {
+				if (cascaded.cast(x, -2, z) != single.cast(x, -2, z)) {
+					throw new AssertionError("Four unfitted cascades lit (" + x + ", -2, " + z + ") as " + cascaded.cast(x, -2, z) + " rather than " + single.cast(x, -2, z));
+				}
+			}
+		}
+	}
+	
+	public static void testShadowScheduler() {
+		// Casts under a budget have to stay within it, and catch up to every-frame casts on a still
+		// scene, even when only what changed is redrawn
+		SceneGenerator generator = new SceneGenerator(29);
+		generator.setTriangleCount(300);
+		generator.setLights(4, SceneGenerator.LightType.POINT);
+		Scene scene = generator.generate();
+		ShadowScheduler scheduler = new ShadowScheduler();
+		scheduler.setTriangleBudget(300*5);
+		DirectShader scheduled = new DirectShader(0.1);
+		scheduled.setShadowScheduler(scheduler);
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, scheduled);
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.1));
+		cam.feed(scene);
+		cam.setDirtyRegions(true);
+		reference.feed(scene);
+		for (int i = 0; i < 5; i++) {
+			cam.render();
+			if (!cam.wasRendered()) {
+				throw new AssertionError("Skipped frame " + i + " while faces were still owed");
+			}
+			if (scheduler.getUpdated() > 5) {
+				throw new AssertionError("Cast " + scheduler.getUpdated() + " faces over a budget of 5");
+			}
+		}
+		reference.render();
+		int[] pixels = new int[400*300];
+		int[] expected = new int[400*300];
+		cam.load(pixels);
+		reference.load(expected);
+		if (!java.util.Arrays.equals(pixels, expected)) {
+			throw new AssertionError("Scheduled shadows never caught up, " + RegressionHarness.divergence(expected, pixels) + " diverged");
+		}
+		cam.render();
+		if (cam.wasRendered()) {
+			throw new AssertionError("Redrew a frame once every face was cast");
+		}
+	}
+	
+	public static void testScheduledMotion() {
+		// A light moved while the scheduler leaves its map stale has to keep lighting from where it
+		// was cast, rather than looking its old map up from where it is now
+		Plane floor0 = new Plane(new double[][] {{-10, 0, -10}, {-10, 0, 10}, {10, 0, -10}});
+		Plane floor1 = new Plane(new double[][] {{10, 0, 10}, {-10, 0, 10}, {10, 0, -10}});
+		Plane occluder0 = new Plane(new double[][] {{-1, 5, -1}, {-1, 5, 1}, {1, 5, -1}});
+		Plane occluder1 = new Plane(new double[][] {{1, 5, 1}, {-1, 5, 1}, {1, 5, -1}});
+		Plane[] planes = new Plane[] {floor0, floor1, occluder0, occluder1};
+		PyramidLight first = new PyramidLight(64, 64, Math.toRadians(90), 0.2, 1000, new double[] {1, 1, 1}, 15, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 10, 0}));
+		PyramidLight second = first.clone();
+		PyramidLight reference = first.clone();
+		reference.cast(planes);
+		Light[] lights = new Light[] {first, second};
+		ShadowScheduler scheduler = new ShadowScheduler();
+		scheduler.setTriangleBudget(planes.length);
+		scheduler.setMotionWeight(0);
+		Vector camLocation = new Vector(new double[] {0, 2, 0});
+		scheduler.update(planes, lights, camLocation);
+		if (first.cast(0, 0, 0) != 0) {
+			PyramidLight swap = first;
+			first = second;
+			second = swap;
+		}
+		// The light cast first is stalest, so it's the one cast again after the other moves
+		scheduler.update(planes, lights, camLocation);
+		second.displacement = new Vector(new double[] {3, 10, 0});
+		scheduler.update(planes, lights, camLocation);
+		for (double x = -4; x <= 4; x += 0.5) {
+			for (double z = -4; z <= 4; z += 0.5) {
+				if (second.cast(x, 0, z) != reference.cast(x, 0, z)) {
+					throw new AssertionError("A stale light lit (" + x + ", 0, " + z + ") as " + second.cast(x, 0, z) + " rather than " + reference.cast(x, 0, z));
+				}
+			}
+		}
+		
+		// Likewise a sun turned while its cascades are stale
+		DirectionalLight firstSun = new DirectionalLight(64, new double[] {1, 1, 1}, 1, new Rotation(Math.toRadians(90), 0));
+		DirectionalLight secondSun = firstSun.clone();
+		DirectionalLight referenceSun = firstSun.clone();
+		referenceSun.cast(planes);
+		lights = new Light[] {firstSun, secondSun};
+		scheduler = new ShadowScheduler();
+		scheduler.setTriangleBudget(planes.length);
+		scheduler.setMotionWeight(0);
+		scheduler.update(planes, lights, camLocation);
+		if (firstSun.cast(0, 0, 0) != 0) {
+			DirectionalLight swap = firstSun;
+			firstSun = secondSun;
+			secondSun = swap;
+		}
+		scheduler.update(planes, lights, camLocation);
+		secondSun.orientation = new Rotation(Math.toRadians(70), 0);
+		scheduler.update(planes, lights, camLocation);
+		for (double x = -4; x <= 4; x += 0.5) {
+			for (double z = -4; z <= 4; z += 0.5) {
+				if (secondSun.cast(x, 0, z) != referenceSun.cast(x, 0, z)) {
+					throw new AssertionError("A stale sun lit (" + x + ", 0, " + z + ") as " + secondSun.cast(x, 0, z) + " rather than " + referenceSun.cast(x, 0, z));
+				}
+			}
+		}
+	}
+	
+	public static void testScheduledReceivers() {
+		// A face culled to receivers on the left has to be recast once the view turns to the right,
+		// however low its priority, or the casters over the right stay out of its map
+		Plane left0 = new Plane(new double[][] {{-10, 0, -10}, {-10, 0, 10}, {0, 0, -10}});
+		Plane left1 = new Plane(new double[][] {{0, 0, 10}, {-10, 0, 10}, {0, 0, -10}});
+		Plane right0 = new Plane(new double[][] {{0, 0, -10}, {0, 0, 10}, {10, 0, -10}});
+		Plane right1 = new Plane(new double[][] {{10, 0, 10}, {0, 0, 10}, {10, 0, -10}});
+		Plane leftOccluder = new Plane(new double[][] {{-4, 5, -1}, {-4, 5, 1}, {-2, 5, 0}});
+		Plane rightOccluder = new Plane(new double[][] {{4, 5, -1}, {4, 5, 1}, {2, 5, 0}});
+		Plane[] planes = new Plane[] {left0, left1, right0, right1, leftOccluder, rightOccluder};
+		// The dim light reaches little more than the occluders, too little of the view far off to be
+		// recast for its staleness alone
+		PyramidLight dim = new PyramidLight(64, 64, Math.toRadians(90), 0.2, 1000, new double[] {1, 1, 1}, 0.04, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 10, 0}));
+		PyramidLight bright = new PyramidLight(64, 64, Math.toRadians(90), 0.2, 1000, new double[] {1, 1, 1}, 15, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 10, 0}));
+		Light[] lights = new Light[] {dim, bright};
+		boolean[] receivers = new boolean[] {true, true, false, false, false, false};
+		for (Light light:lights) {
+			light.setReceivers(receivers);
+		}
+		ShadowScheduler scheduler = new ShadowScheduler();
+		scheduler.setTriangleBudget(planes.length);
+		Vector camLocation = new Vector(new double[] {0, 10, -40});
+		scheduler.update(planes, lights, camLocation);
+		scheduler.update(planes, lights, camLocation);
+		receivers[0] = false;
+		receivers[1] = false;
+		receivers[2] = true;
+		receivers[3] = true;
+		scheduler.update(planes, lights, camLocation);
+		scheduler.update(planes, lights, camLocation);
+		if (dim.cast(6, 0, 0) != 0) {
+			throw new AssertionError("The dim light's map was left culled to the receivers on the left");
+		}
+	}
+	
+	public static void testDynamicResolution() {
+		// A view too heavy for the target has to drop its scale while still filling the whole output
+		ResolutionController controller = new ResolutionController(100000);
+		controller.setSettleFrames(2);
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.feed(displayScene());
+		cam.setDynamicResolution(controller);
+		int[] pixels = new int[400*300];
+		for (int i = 0; i < 20; i++) {
+			cam.render();
+			cam.load(pixels);
+		}
+		System.out.println("Rendering at a scale of " + cam.getRenderScale());
+		if (cam.getRenderScale() != 0.25) {
+			throw new AssertionError("Scale " + cam.getRenderScale() + " never dropped to its limit");
+		}
+		int[] full = new int[400*300];
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		reference.feed(displayScene());
+		reference.render();
+		reference.load(full);
+		double divergence = RegressionHarness.divergence(full, pixels);
+		System.out.println("Upsampled frame diverged at " + divergence + " of pixels");
+		if (divergence > 0.1) {
+			throw new AssertionError("Upsampled frame strays from the full size one");
+		}
+		
+		// Changing scale renders into the same buffers, so the temporal cache carries over
+		controller = new ResolutionController(100000);
+		controller.setSettleFrames(2);
+		cam.setDynamicResolution(controller);
+		cam.setTemporalCache(true);
+		int changes = 0;
+		for (int i = 0; i < 20; i++) {
+			double scale = cam.getRenderScale();
+			cam.setOrientation(new Rotation(Math.toRadians(15 + i*0.1), 0));
+			cam.render();
+			cam.load(pixels);
+			if (i > 0 && cam.getRenderScale() != scale) {
+				changes++;
+				if (cam.getTemporalCache().getReused() == 0) {
+					throw new AssertionError("Changing scale from " + scale + " to " + cam.getRenderScale() + " dropped the temporal cache");
+				}
+			}
+		}
+		if (changes == 0) {
+			throw new AssertionError("Scale never changed under the temporal cache");
+		}
+	}
+	
+	public static void testProgressive() {
+		// Refining has to end on the same frame a full render draws, then stop drawing until the view moves
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.feed(displayScene());
+		cam.setProgressive(4);
+		int[] pixels = new int[400*300];
+		int[] expectedStrides = new int[] {4, 2, 1};
+		for (int stride:expectedStrides) {
+			long start = System.nanoTime();
+			cam.render();
+			cam.load(pixels);
+			System.out.println("Stride " + cam.getStride() + " took " + (System.nanoTime() - start)/1000000.0 + " ms");
+			if (cam.getStride() != stride || !cam.wasRendered()) {
+				throw new AssertionError("Rendered at stride " + cam.getStride() + " rather than " + stride);
+			}
+		}
+		cam.render();
+		if (cam.wasRendered()) {
+			throw new AssertionError("Redrew a frame that was already refined");
+		}
+		cam.load(pixels);
+		int[] full = new int[400*300];
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		reference.feed(displayScene());
+		reference.render();
+		reference.load(full);
+		if (!Arrays.equals(full, pixels)) {
+			throw new AssertionError("Refined frame differs from a full render");
+		}
+		cam.setPosition(new Vector(new double[] {0, 0, 1}));
+		cam.render();
+		if (cam.getStride() != 4) {
+			throw new AssertionError("Moving didn't restart refinement");
+		}
+		
+		// Once warmed up, refining renders every stride into the same buffers without allocating
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+		Vector[] positions = new Vector[] {new Vector(new double[] {0, 0, 1}), new Vector(new double[] {0, 0, 2})};
+		long allocated = 0;
+		for (int i = 0; i < 31; i++) {
+			if (i == 30) {
+				allocated = threads.getCurrentThreadAllocatedBytes();
+			}
+			cam.setPosition(positions[i % 2]);
+			for (int k = 0; k < expectedStrides.length; k++) {
+				cam.render();
+				cam.load(pixels);
+			}
+		}
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		if (allocated > 0) {
+			throw new AssertionError("Refining allocated " + allocated + " bytes");
+		}
+	}
+	
+	public static void testTemporalCache() {
+		// A slowly turning view should reuse most of its shading and still match a view shaded in full
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		Scene scene = displayScene();
+		cam.feed(scene);
+		reference.feed(scene);
+		cam.setTemporalCache(true);
+		int[] pixels = new int[400*300];
+		int[] full = new int[400*300];
+		double worst = 0;
+		int reused = 0;
+		for (int i = 0; i < 20; i++) {
+			Rotation turned = new Rotation(Math.toRadians(15), 0).rotatedClone(new Vector(1), Math.toRadians(i*0.1));
+			cam.setOrientation(turned);
+			reference.setOrientation(turned);
+			cam.render();
+			cam.load(pixels);
+			reference.render();
+			reference.load(full);
+			worst = Math.max(worst, RegressionHarness.divergence(full, pixels));
+			reused += cam.getTemporalCache().getReused();
+		}
+		System.out.println("Reused " + reused/20 + " fragments a frame, diverging at worst at " + worst + " of pixels");
+		if (reused/20 < 400*300/4) {
+			throw new AssertionError("Too little shading was reused");
+		}
+		if (worst > 0.05) {
+			throw new AssertionError("Reused shading strays from the full shading");
+		}
+	}
+	
+	public static void testVariableRate() {
+		// Blending between samples on planes the light classifies as lit throughout should save
+		// most of their shading without changing what the full rate draws
+		Scene display = displayScene();
+		Plane[] planes = new Plane[] {display.planes[0], display.planes[1], display.planes[3]};
+		Texture[] textures = new Texture[] {display.textures[0], display.textures[1], display.textures[3]};
+		PyramidLight light = new PyramidLight(400, 400, Math.toRadians(120), 0.2, 1000, new double[] {1, 1, 1}, 15, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 10, 0}));
+		light.setClassifying(true);
+		Light[] lights = new Light[] {light};
+		VariableRateShader shader = new VariableRateShader(new DirectShader(0.15), 4);
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, shader, new Rotation(Math.toRadians(15), 0), new Vector());
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.feed(planes, textures, lights);
+		reference.feed(planes, textures, lights);
+		int[] pixels = new int[400*300];
+		int[] full = new int[400*300];
+		cam.render();
+		cam.load(pixels);
+		reference.render();
+		reference.load(full);
+		double divergence = RegressionHarness.divergence(full, pixels);
+		System.out.println("Shaded " + shader.getShaded() + " fragments and blended " + shader.getInterpolated() + ", diverging at " + divergence + " of pixels");
+		if (shader.getInterpolated() < shader.getShaded()) {
+			throw new AssertionError("Blended fewer fragments than were shaded");
+		}
+		if (divergence > 0.01) {
+			throw new AssertionError("Blended shading strays from the full rate");
+		}
+	}
+	
+	public static void testVariableRateShadows() {
+		// A shadow a pixel wide between two samples that agree has to be shaded, not blended over
+		Plane floor0 = new Plane(new double[][] {{-2, 0, -2}, {-2, 0, 2}, {2, 0, -2}});
+		Plane floor1 = new Plane(new double[][] {{2, 0, 2}, {-2, 0, 2}, {2, 0, -2}});
+		Plane bar0 = new Plane(new double[][] {{0.5, 1, -2}, {0.5, 1, 2}, {0.6, 1, -2}});
+		Plane bar1 = new Plane(new double[][] {{0.6, 1, 2}, {0.5, 1, 2}, {0.6, 1, -2}});
+		Plane[] planes = new Plane[] {floor0, floor1, bar0, bar1};
+		ColorTexture white = new ColorTexture(new double[] {1, 1, 1}, 0, 1);
+		ColorTexture red = new ColorTexture(new double[] {1, 0, 0}, 0, 1);
+		Texture[] textures = new Texture[] {white, white, red, red};
+		DirectionalLight sun = new DirectionalLight(512, new double[] {1, 1, 1}, 1, new Rotation(Math.toRadians(90), 0).rotatedClone(new Vector(0), 0.35));
+		sun.setShadowDistance(4);
+		Light[] lights = new Light[] {sun};
+		VariableRateShader shader = new VariableRateShader(new DirectShader(0.1), 4);
+		Camera cam = new Camera(100, 75, 1.57, 0.1, 1000, shader, new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 3, 0}));
+		Camera reference = new Camera(100, 75, 1.57, 0.1, 1000, new DirectShader(0.1), new Rotation(Math.toRadians(90), 0), new Vector(new double[] {0, 3, 0}));
+		cam.feed(planes, textures, lights);
+		reference.feed(planes, textures, lights);
+		int[] pixels = new int[100*75];
+		int[] full = new int[100*75];
+		cam.render();
+		cam.load(pixels);
+		reference.render();
+		reference.load(full);
+		int lost = 0;
+		for (int i = 0; i < pixels.length; i++) {
+			if (Math.abs((full[i] & 0xff) - (pixels[i] & 0xff)) > 8) {
+				lost++;
+			}
+		}
+		System.out.println("Shaded " + shader.getShaded() + " fragments and blended " + shader.getInterpolated() + ", losing " + lost + " shadowed pixels");
+		if (lost > 0) {
+			throw new AssertionError("Blended over " + lost + " pixels of a narrow shadow");
+		}
+	}
+	
+	public static void testDirtyRegions() {
+		// Moving the triangle before a still view has to redraw less than the screen and still
+		// match a full redraw, shadow and all
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		Scene scene = displayScene();
+		cam.feed(scene);
+		reference.feed(scene);
+		cam.setDirtyRegions(true);
+		int[] pixels = new int[400*300];
+		int[] full = new int[400*300];
+		Plane triangle = scene.planes[2];
+		double[][] corners = new double[][] {{-2, -1, 10}, {2, -1, 10}, {0, 1, 10}};
+		long redrawn = 0;
+		for (int i = 0; i < 10; i++) {
+			double shift = i*0.05;
+			triangle.set(new Vector(new double[] {corners[0][0] + shift, corners[0][1], corners[0][2]}), new Vector(new double[] {corners[1][0] + shift, corners[1][1], corners[1][2]}), new Vector(new double[] {corners[2][0] + shift, corners[2][1], corners[2][2]}));
+			cam.render();
+			cam.load(pixels);
+			reference.render();
+			reference.load(full);
+			DirtyRegions dirty = cam.getDirtyRegions();
+			if (i > 0) {
+				redrawn += (dirty.right - dirty.left)*(dirty.bottom - dirty.top);
+			}
+			if (!Arrays.equals(full, pixels)) {
+				throw new AssertionError("Frame " + i + " differs from a full redraw");
+			}
+		}
+		cam.render();
+		if (cam.wasRendered()) {
+			throw new AssertionError("Redrew a frame where nothing changed");
+		}
+		System.out.println("Redrew " + redrawn/9 + " of " + 400*300 + " pixels a frame");
+		if (redrawn/9 >= 400*300) {
+			throw new AssertionError("Moving one plane redrew the whole screen");
+		}
+	}
+	
+	public static void testDirectOutput() {
+		// Once loaded into, a direct output frame has to shade straight into the pixels, so that
+		// they hold each frame as it's rendered, before any load, and match a frame loaded apart
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.setDirectOutput(new ToneCurve(2.2));
+		cam.feed(displayScene());
+		int[] pixels = new int[400*300];
+		cam.render();
+		cam.load(pixels);
+		int[] first = pixels.clone();
+		Rotation turned = new Rotation(Math.toRadians(15), 0).rotatedClone(new Vector(1), 0.3);
+		cam.setOrientation(turned);
+		cam.render();
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), turned, new Vector());
+		reference.setDirectOutput(new ToneCurve(2.2));
+		reference.feed(displayScene());
+		reference.render();
+		int[] expected = new int[400*300];
+		reference.load(expected);
+		if (Arrays.equals(pixels, first) || !Arrays.equals(pixels, expected)) {
+			throw new AssertionError("Rendering didn't shade into the pixels loaded, " + RegressionHarness.divergence(expected, pixels) + " diverged");
+		}
+		cam.load(pixels);
+		if (!Arrays.equals(pixels, expected)) {
+			throw new AssertionError("Loading the pixels shaded into changed them, " + RegressionHarness.divergence(expected, pixels) + " diverged");
+		}
+	}
+	
+	public static void testPackedSpan() {
+		// A reverse-Z row rasterized as a span has to keep the same biased depths as the fragments
+		// tested one at a time, out on a wall far enough away that the bias is under a code
+		Plane wall = new Plane(new double[][] {{-400, -100, 600}, {400, -100, 700}, {0, 100, 640}}).scale(64);
+		wall.testForUnflattening();
+		double tolerance = 0.001;
+		for (int bits:new int[] {16, 24}) {
+			PackedDepthBuffer spans = PackedDepthBuffer.create(DepthEncoding.REVERSE, bits, DepthLayout.ROW_MAJOR, 128, 32, 0.1, 1000);
+			PackedDepthBuffer fragments = PackedDepthBuffer.create(DepthEncoding.REVERSE, bits, DepthLayout.ROW_MAJOR, 128, 32, 0.1, 1000);
+			spans.clear(1000);
+			fragments.clear(1000);
+			for (int y = 0; y < 32; y++) {
+				int x = spans.testSpan(SimdBackend.get(), wall, 0, y, 128, (double)(y - 16), 64, tolerance, null);
+				for (; x < 128; x++) {
+					spans.test(spans.index(x, y), wall.getDepthOfFlatPoint((double)(x - 64), (double)(y - 16)) + tolerance);
+				}
+				for (x = 0; x < 128; x++) {
+					fragments.test(fragments.index(x, y), wall.getDepthOfFlatPoint((double)(x - 64), (double)(y - 16)) + tolerance);
+				}
+			}
+			int diverged = 0;
+			for (int i = 0; i < 128*32; i++) {
+				diverged += spans.get(i) != fragments.get(i) ? 1 : 0;
+			}
+			if (diverged > 0) {
+				throw new AssertionError(diverged + " of a " + bits + " bit span's depths diverged from testing each fragment");
+			}
+		}
+	}
+	
+	public static void testToneMapping() {
+		// Overexposed, rolling off toward white should saturate fewer pixels than clipping at 1
+		Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		cam.setPrecision(Precision.FLOAT);
+		cam.feed(displayScene());
+		cam.render();
+		int[] clipped = new int[400*300];
+		ToneMapper clipping = new ToneMapper(new ToneCurve(1));
+		clipping.setExposure(8);
+		cam.setToneMapper(clipping);
+		cam.load(clipped);
+		int[] rolled = new int[400*300];
+		ToneMapper rolling = new ToneMapper(new ToneCurve(1, 16));
+		rolling.setExposure(8);
+		cam.setToneMapper(rolling);
+		cam.load(rolled);
+		int clippedSaturated = 0;
+		int rolledSaturated = 0;
+		for (int i = 0; i < rolled.length; i++) {
+			clippedSaturated += (clipped[i] & 0xff0000) == 0xff0000 || (clipped[i] & 0xff00) == 0xff00 || (clipped[i] & 0xff) == 0xff ? 1 : 0;
+			rolledSaturated += (rolled[i] & 0xff0000) == 0xff0000 || (rolled[i] & 0xff00) == 0xff00 || (rolled[i] & 0xff) == 0xff ? 1 : 0;
+		}
+		System.out.println("Saturated " + rolledSaturated + " pixels rolling off against " + clippedSaturated + " clipping");
+		if (rolledSaturated >= clippedSaturated) {
+			throw new AssertionError("Rolling off saturated as much as clipping");
+		}
+		
+		// The dim display scene should be exposed up, and mapping on many threads has to pack the
+		// same frame as one
+		ToneMapper adaptive = new ToneMapper(new ToneCurve(2.2, 16));
+		adaptive.setAdaptive(true);
+		adaptive.setThreads(4);
+		cam.setToneMapper(adaptive);
+		int[] mapped = new int[400*300];
+		for (int i = 0; i < 5; i++) {
+			cam.render();
+			cam.load(mapped);
+		}
+		adaptive.setAdaptation(0.18, 0);
+		adaptive.setThreads(1);
+		int[] serial = new int[400*300];
+		cam.load(serial);
+		System.out.println("Adapted to an exposure of " + adaptive.getExposure());
+		if (!(adaptive.getExposure() > 1)) {
+			throw new AssertionError("Exposure didn't rise for a dim scene");
+		}
+		if (!Arrays.equals(mapped, serial)) {
+			throw new AssertionError("Mapping on threads packed a different frame");
+		}
+	}
+	
+	public static void testCompositing() {
+		// A translucent bar over a camera that only redraws what moved, composited on threads and
+		// on one, has to match blending it by hand, and composite nothing once both hold still
+		Scene scene = displayScene();
+		Compositor[] compositors = new Compositor[2];
+		int[][] outputs = new int[2][400*300];
+		for (int c = 0; c < 2; c++) {
+			Camera cam = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+			cam.feed(scene);
+			cam.setDirtyRegions(true);
+			compositors[c] = new Compositor(400, 300);
+			compositors[c].setThreads(c == 0 ? 4 : 1);
+			compositors[c].addLayer(cam);
+			compositors[c].addLayer(translucentBar());
+		}
+		Camera reference = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), new Rotation(Math.toRadians(15), 0), new Vector());
+		reference.feed(scene);
+		int[] expected = new int[400*300];
+		Plane triangle = scene.planes[2];
+		double[][] corners = new double[][] {{-2, -1, 10}, {2, -1, 10}, {0, 1, 10}};
+		for (int i = 0; i < 4; i++) {
+			double shift = i*0.05;
+			triangle.set(new Vector(new double[] {corners[0][0] + shift, corners[0][1], corners[0][2]}), new Vector(new double[] {corners[1][0] + shift, corners[1][1], corners[1][2]}), new Vector(new double[] {corners[2][0] + shift, corners[2][1], corners[2][2]}));
+			for (int c = 0; c < 2; c++) {
+				compositors[c].render();
+				compositors[c].load(outputs[c]);
+			}
+			reference.render();
+			reference.load(expected);
+			for (int p = 250*400; p < 300*400; p++) {
+				int under = expected[p];
+				expected[p] = ((((under >> 16) & 0xff)*127 + 255*128 + 127)/255 << 16) | ((((under >> 8) & 0xff)*127 + 127)/255 << 8) | (((under & 0xff)*127 + 127)/255);
+			}
+			if (!Arrays.equals(outputs[0], expected) || !Arrays.equals(outputs[1], expected)) {
+				throw new AssertionError("Frame " + i + " differs from blending by hand");
+			}
+			if (i > 0) {
+				System.out.println("Composited " + compositors[0].getComposited() + " of " + 400*300 + " pixels");
+				if (compositors[0].getComposited() >= 400*300) {
+					throw new AssertionError("Moving one plane composited the whole screen");
+				}
+			}
+		}
+		compositors[0].render();
+		compositors[0].load(outputs[0]);
+		if (compositors[0].getComposited() != 0) {
+			throw new AssertionError("Composited " + compositors[0].getComposited() + " pixels where nothing changed");
+		}
+	}
+	
+	// Half transparent red over the bottom 50 rows, drawn once
+	private static ImageSource translucentBar() {
+		return new ImageSource() {
+			private boolean drawn;
+			private boolean changed;
+			
+			public void reshape(int width, int height) {
+				drawn = false;
+			}
+			
+			public void render() {}
+			
+			public void load(int[] pixels) {
+				changed = !drawn;
+				if (changed) {
+					for (int p = 0; p < pixels.length; p++) {
+						pixels[p] = p >= 250*400 ? 0x80ff0000 : 0;
+					}
+				}
+				drawn = true;
+			}
+			
+			public boolean isOpaque() {
+				return false;
+			}
+			
+			public boolean getChanged(int[] bounds) {
+				bounds[0] = 0;
+				bounds[1] = 0;
+				bounds[2] = 400;
+				bounds[3] = 300;
+				return changed;
+			}
+		};
+	}
+	
+	public static void testMultiView() {
+		// A stereo pair and a view off to the side, sharing one cast of the light, have to match
+		// each view rendered on its own, and cast the light once a frame rather than once a view
+		Vector[] positions = new Vector[] {new Vector(new double[] {-0.3, 0, 0}), new Vector(new double[] {0.3, 0, 0}), new Vector(new double[] {-4, 1, 2})};
+		Rotation[] orientations = new Rotation[] {new Rotation(Math.toRadians(15), 0), new Rotation(Math.toRadians(15), 0), new Rotation(Math.toRadians(30), 1)};
+		MultiView multiView = new MultiView();
+		Scene scene = displayScene();
+		int[] casts = new int[1];
+		scene.lights[0] = new PointLight(500, 0.75, 1000, new double[] {1, 1, 1}, 15, new Rotation(), new Vector(new double[] {0, 10, 0})) {
+			public void cast(Plane[] planes) {
+				casts[0]++;
+				super.cast(planes);
+			}
+		};
+		multiView.feed(scene);
+		Camera[] views = new Camera[3];
+		Camera[] alone = new Camera[3];
+		Scene separate = displayScene();
+		for (int v = 0; v < 3; v++) {
+			views[v] = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), orientations[v], positions[v]);
+			multiView.addView(views[v]);
+			alone[v] = new Camera(400, 300, 1.57, 0.1, 1000, new DirectShader(0.15), orientations[v], positions[v]);
+			alone[v].feed(separate);
+		}
+		int[] pixels = new int[400*300];
+		int[] expected = new int[400*300];
+		multiView.render();
+		if (casts[0] != scene.lights.length) {
+			throw new AssertionError("Cast " + casts[0] + " times for " + scene.lights.length + " light in a frame of 3 views");
+		}
+		for (int v = 0; v < 3; v++) {
+			alone[v].render();
+			views[v].load(pixels);
+			alone[v].load(expected);
+			if (!Arrays.equals(pixels, expected)) {
+				throw new AssertionError("View " + v + " diverged at " + RegressionHarness.divergence(expected, pixels) + " from rendering it alone");
+			}
+		}
+		for (int i = 0; i < 10; i++) {
+			multiView.render();
+			for (Camera view:alone) {
+				view.render();
+			}
+		}
+		casts[0] = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			multiView.render();
+		}
+		double shared = (System.nanoTime() - start)/10000000.0;
+		if (casts[0] != 10*scene.lights.length) {
+			throw new AssertionError("Cast " + casts[0] + " times over 10 frames of " + scene.lights.length + " light");
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			for (Camera view:alone) {
+				view.render();
+			}
+		}
+		double separately = (System.nanoTime() - start)/10000000.0;
+		System.out.println("Three views took " + shared + " ms sharing shadows and " + separately + " ms apart");
+	}
+	
+	public static void testBatchRenderer() {
+		// Poses circling the scene, rendered on four workers, have to match each pose rendered on
+		// its own camera, casting the light only when the scene has changed since the last batch
+		int count = 16;
+		Vector[] positions = new Vector[count];
+		Rotation[] orientations = new Rotation[count];
+		for (int i = 0; i < count; i++) {
+			double angle = 2*Math.PI*i/count;
+			positions[i] = new Vector(new double[] {-8*Math.sin(angle), 1, 10 - 8*Math.cos(angle)});
+			orientations[i] = new Rotation(Math.toRadians(15), 0).rotatedClone(new Vector(1), angle);
+		}
+		BatchRenderer batch = new BatchRenderer(200, 150, 1.57, 0.1, 1000, () -> new DirectShader(0.15));
+		Scene scene = displayScene();
+		int[] casts = new int[1];
+		scene.lights[0] = new PointLight(500, 0.75, 1000, new double[] {1, 1, 1}, 15, new Rotation(), new Vector(new double[] {0, 10, 0})) {
+			public void cast(Plane[] planes) {
+				casts[0]++;
+				super.cast(planes);
+			}
+		};
+		batch.feed(scene);
+		batch.setThreads(4);
+		int[][] views = new int[count][];
+		Scene separate = displayScene();
+		int[] expected = new int[200*150];
+		for (int shift = 0; shift < 2; shift++) {
+			if (shift > 0) {
+				// Moving the triangle has to cast again, and show its shadow where it is now
+				for (Scene moved:new Scene[] {scene, separate}) {
+					Plane triangle = moved.planes[2];
+					triangle.set(new Vector(new double[] {-1, -1, 10}), new Vector(new double[] {3, -1, 10}), new Vector(new double[] {1, 1, 10}));
+				}
+			}
+			batch.render(positions, orientations, (index, pixels) -> views[index] = pixels.clone());
+			batch.render(positions, orientations, (index, pixels) -> {});
+			if (casts[0] != shift + 1) {
+				throw new AssertionError("Cast the light " + casts[0] + " times over " + (shift + 1) + " scenes");
+			}
+			for (int i = 0; i < count; i++) {
+				Camera cam = new Camera(200, 150, 1.57, 0.1, 1000, new DirectShader(0.15), orientations[i], positions[i]);
+				cam.feed(separate);
+				cam.render();
+				cam.load(expected);
+				if (!Arrays.equals(views[i], expected)) {
+					throw new AssertionError("Pose " + i + " of scene " + shift + " diverged at " + RegressionHarness.divergence(expected, views[i]) + " from rendering it alone");
+				}
+			}
+		}
+		
+		// With the cast out of the way, four workers have to outpace one wherever there are cores for them
+		double baseline = 0;
+		for (int threads = 1; threads <= 4; threads *= 4) {
+			batch.setThreads(threads);
+			for (int i = 0; i < 5; i++) {
+				batch.render(positions, orientations, (index, pixels) -> {});
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < 10; i++) {
+				batch.render(positions, orientations, (index, pixels) -> {});
+			}
+			double viewsPerSecond = 10*count/((System.nanoTime() - start)/1000000000.0);
+			if (threads == 1) {
+				baseline = viewsPerSecond;
+			}
+			System.out.println(threads + " workers rendered " + viewsPerSecond + " views a second, " + viewsPerSecond/baseline + " times one");
+			if (threads > 1 && Runtime.getRuntime().availableProcessors() >= threads && viewsPerSecond < 1.5*baseline) {
+				throw new AssertionError(threads + " workers on " + Runtime.getRuntime().availableProcessors() + " cores rendered only " + viewsPerSecond/baseline + " times as many views as one");
+			}
+		}
+	}
+	
 	public static void testUnflattening() {
 		Vector screenCenter = new Vector(new double[] {400, 300, 0});
 		//Shader shader = new PlainShader();
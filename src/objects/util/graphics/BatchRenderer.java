@@ -0,0 +1,154 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import objects.util.graphics.geometry.*;
+
+public class BatchRenderer {
+	// Receives each view as soon as it's done, on the thread that rendered it. The pixels are that
+	// worker's own and hold its next view after this returns, so they have to be used or copied here
+	public interface Listener {
+		void rendered(int index, int[] pixels);
+	}
+	
+	private final int width;
+	private final int height;
+	private final double fov;
+	private final double minDistance;
+	private final double maxDistance;
+	private final Supplier<Shader> shaders;
+	private Precision precision = Precision.DOUBLE;
+	private Plane[] planes = new Plane[] {};
+	private Texture[] textures = new Texture[] {};
+	private Light[] lights = new Light[] {};
+	// Whether the lights have been cast since they were fed, and the fingerprint of the planes and
+	// lights they were cast with
+	private boolean cast;
+	private long castFingerprint;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private ExecutorService pool;
+	// Every worker renders with a camera, shader, frame and pixels of its own
+	private final ArrayList<Camera> cameras = new ArrayList<>();
+	private final ArrayList<int[]> pixels = new ArrayList<>();
+	private final ArrayList<Callable<Object>> workers = new ArrayList<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private Vector[] positions;
+	private Rotation[] orientations;
+	private Listener listener;
+	public BatchRenderer(int width, int height, double fov, double minDistance, double maxDistance, Supplier<Shader> workerShaders) {
+		this.width = width;
+		this.height = height;
+		this.fov = fov;
+		this.minDistance = minDistance;
+		this.maxDistance = maxDistance;
+		shaders = workerShaders;
+	}
+	
+	public void setThreads(int count) {
+		threads = Math.max(count, 1);
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		cameras.clear();
+		pixels.clear();
+		workers.clear();
+	}
+	
+	public void setPrecision(Precision newPrecision) {
+		precision = newPrecision;
+		for (Camera camera:cameras) {
+			camera.setPrecision(precision);
+		}
+	}
+	
+	public void feed(Plane[] newPlanes, Texture[] newTextures, Light[] newLights) {
+		planes = newPlanes;
+		textures = newTextures;
+		lights = newLights;
+		cast = false;
+		for (Camera camera:cameras) {
+			camera.feed(planes, textures, lights);
+		}
+	}
+	
+	public void feed(Scene scene) {
+		feed(scene.planes, scene.textures, scene.lights);
+	}
+	
+	// Renders the view from every pose, positions[i] with orientations[i], across the workers,
+	// handing each to the listener as it's done and returning once all of them are. Every light
+	// is cast beforehand, fitted to all the planes rather than to any one view, unless neither the
+	// planes nor the lights have changed since the last batch. Its maps are only read while the
+	// views render, so the scene mustn't change until this returns
+	public void render(Vector[] newPositions, Rotation[] newOrientations, Listener newListener) {
+		long fingerprint = ShadowScheduler.fingerprint(planes, lights);
+		if (!cast || fingerprint != castFingerprint) {
+			for (Light light:lights) {
+				light.fit(null, null, 0, 0, 0);
+				light.setReceivers(null);
+				light.cast(planes);
+			}
+			cast = true;
+			castFingerprint = fingerprint;
+		}
+		if (workers.isEmpty()) {
+			for (int i = 0; i < threads; i++) {
+				Camera camera = new Camera(width, height, fov, minDistance, maxDistance, shaders.get());
+				camera.setPrecision(precision);
+				camera.feed(planes, textures, lights);
+				cameras.add(camera);
+				pixels.add(new int[width*height]);
+				int worker = i;
+				workers.add(Executors.callable(() -> work(worker)));
+			}
+		}
+		positions = newPositions;
+		orientations = newOrientations;
+		listener = newListener;
+		next.set(0);
+		try {
+			if (threads == 1) {
+				work(0);
+				return;
+			}
+			if (pool == null) {
+				pool = Executors.newFixedThreadPool(threads, runnable -> {
+					Thread thread = new Thread(runnable);
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			for (Future<Object> future:pool.invokeAll(workers)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering a batch", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Rendering a batch failed", e.getCause());
+		} finally {
+			positions = null;
+			orientations = null;
+			listener = null;
+		}
+	}
+	
+	// Takes the next pose not yet taken until there are none left, so that workers that draw
+	// cheaper views take more of them
+	private void work(int worker) {
+		Camera camera = cameras.get(worker);
+		int[] workerPixels = pixels.get(worker);
+		for (int index = next.getAndIncrement(); index < positions.length; index = next.getAndIncrement()) {
+			camera.setPosition(positions[index]);
+			camera.setOrientation(orientations[index]);
+			camera.render(false);
+			camera.load(workerPixels);
+			listener.rendered(index, workerPixels);
+		}
+	}
+}
@@ -2,19 +2,71 @@ package objects.util.graphics;
 
 import java.lang.Math;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import objects.util.graphics.geometry.*;
+import objects.util.graphics.events.RenderEvent;
+import jdk.jfr.EventType;
 
 public class Camera extends ImageSource {
+	private static final EventType RENDER_EVENT = EventType.getEventType(RenderEvent.class);
 	private final Shader primaryShader;
 	private final Shader plainShader;
-	private double[][] zBuffer;
-	private double[][][] screenRGB;
+	private DepthBuffer zBuffer;
+	private FrameBuffer frame;
+	// With a temporal cache, the last frame stays around for the next to reuse its colors
+	private TemporalCache temporalCache;
+	private Shader uncachedShader;
+	private FrameBuffer previousFrame;
+	private Precision precision = Precision.DOUBLE;
+	// Shading writes packed colors through this curve rather than keeping them as precision
+	private ToneCurve directCurve;
+	// Packs the frame in load in place of clamping it
+	private ToneMapper toneMapper;
+	private DepthEncoding depthEncoding;
+	private int depthBits;
+	private Span span;
+	private boolean vectorized = true;
 	private double[] defaultRGB;
 	private int WIDTH;
 	private int HEIGHT;
+	// The size reshaped to, which WIDTH and HEIGHT scale down from under dynamic resolution
+	private int outputWidth;
+	private int outputHeight;
+	// The size of the buffers, which hold every scale, so that frames render into their top left
+	// WIDTH by HEIGHT and a change of scale allocates nothing
+	private int bufferWidth;
+	private int bufferHeight;
+	private ResolutionController resolutionController;
+	private double renderScale = 1;
+	private long frameStart;
+	// Progressive refinement renders at stride times coarser than the scale, halving the stride
+	// every frame nothing changes until a full frame stands
+	private int coarsestStride = 1;
+	private int stride = 1;
+	private boolean refined;
+	private boolean invalidated = true;
+	private boolean rendered;
+	// Under dirty region tracking, what the next load has to repack into the pixels it last loaded
+	private DirtyRegions dirtyRegions;
+	private int[] loadedPixels;
+	private int loadLeft;
+	private int loadTop;
+	private int loadRight;
+	private int loadBottom;
+	// The rectangle of the pixels the last load changed
+	private int changedLeft;
+	private int changedTop;
+	private int changedRight;
+	private int changedBottom;
+	// The frame at its rendered size, and where each output column and row samples it from
+	private int[] scaledPixels = new int[0];
+	private int[] sourceColumns = new int[0];
+	private int[] columnWeights;
+	private int[] sourceRows = new int[0];
+	private int[] rowWeights;
+	private boolean sampled;
 	private double halfFOV;
-	private Vector screenCenter;
 	private double resolutionScalar;
 	private double nearPlane;
 	private double farPlane;
@@ -23,6 +75,15 @@ public class Camera extends ImageSource {
 	private Texture[] textures = new Texture[] {};
 	private Plane[] planes = new Plane[] {};
 	private Light[] lights = new Light[] {};
+	private Lightmap[] lightmaps;
+	// The planes that may reach the screen this frame
+	private boolean[] receivers = new boolean[0];
+	// Whether receivers were found ahead of this render, for the shadow maps of a MultiView
+	private boolean culled;
+	private final ScreenProjector projector = new ScreenProjector();
+	private final Rotation momentOrientation = new Rotation();
+	private final Vector momentDisplacement = new Vector();
+	private final Vector screenCenter = new Vector();
 	public Camera(int width, int height, double fov, double minDistance, double maxDistance, Shader graphicsShader) {
 		halfFOV = fov/2;
 		nearPlane = minDistance;
@@ -50,29 +111,172 @@ public class Camera extends ImageSource {
 	}
 	
 	private void reset() {
-		for (int x = 0; x < WIDTH; x++) {
-			for (int y = 0; y < HEIGHT; y++) {
-				zBuffer[x][y] = farPlane;
-				screenRGB[x][y][0] = defaultRGB[0];
-				screenRGB[x][y][1] = defaultRGB[1];
-				screenRGB[x][y][2] = defaultRGB[2];
-			}
+		if (WIDTH == bufferWidth && HEIGHT == bufferHeight) {
+			zBuffer.clear(farPlane);
+			frame.clear(defaultRGB);
+		} else {
+			zBuffer.clear(farPlane, 0, 0, WIDTH, HEIGHT);
+			frame.clear(defaultRGB, 0, 0, WIDTH, HEIGHT);
 		}
 	}
 	
 	public void reshape(int newWidth, int newHeight) {
-		WIDTH = newWidth;
-		HEIGHT = newHeight;
-		zBuffer = new double[WIDTH][HEIGHT];
-		screenRGB = new double[newWidth][newHeight][3];
-		primaryShader.reshape(screenRGB);
-		plainShader.reshape(screenRGB);
-		screenCenter = new Vector(new double[] {WIDTH/2, HEIGHT/2, 0});
+		outputWidth = newWidth;
+		outputHeight = newHeight;
+		invalidate();
+		allocate();
+	}
+	
+	private void rescale() {
+		WIDTH = Math.min(Math.max((int)Math.round(outputWidth*renderScale), 1), bufferWidth);
+		HEIGHT = Math.min(Math.max((int)Math.round(outputHeight*renderScale), 1), bufferHeight);
+		sampled = false;
+		screenCenter.set(WIDTH/2, HEIGHT/2, 0);
 		resolutionScalar = Math.max(WIDTH, HEIGHT)/(2*Math.tan(halfFOV)); // Math.tan(halfFOV) sine or tangent? Tangent, right?
 	}
 	
+	private void allocate() {
+		double maxScale = Math.max(resolutionController == null ? 1 : resolutionController.getMaxScale(), 1);
+		bufferWidth = Math.max((int)Math.round(outputWidth*maxScale), 1);
+		bufferHeight = Math.max((int)Math.round(outputHeight*maxScale), 1);
+		// Row-major, since ColorTexture tests and writes whole rows by screen index
+		zBuffer = DepthBuffer.create(precision, depthEncoding, depthBits, DepthLayout.ROW_MAJOR, bufferWidth, bufferHeight, nearPlane, farPlane);
+		frame = createFrame();
+		previousFrame = temporalCache == null ? null : createFrame();
+		span = new Span(bufferWidth);
+		setVectorized(vectorized);
+		primaryShader.reshape(frame);
+		plainShader.reshape(frame);
+		rescale();
+	}
+	
+	public void setVectorized(boolean enabled) {
+		// Falls back to the scalar path when the SIMD backend isn't available
+		vectorized = enabled;
+		span.backend = enabled ? SimdBackend.get() : null;
+	}
+	
+	public boolean isVectorized() {
+		return span.backend != null;
+	}
+	
+	// Renders at a scale of the reshaped size that the controller picks from recent frame times,
+	// which load upsamples back to full size. Null renders at full size again. The buffers are
+	// sized for the largest scale the controller allows when it's set
+	public void setDynamicResolution(ResolutionController controller) {
+		resolutionController = controller;
+		renderScale = controller == null ? 1 : controller.getScale();
+		reshape(outputWidth, outputHeight);
+		reset();
+	}
+	
+	public double getRenderScale() {
+		return renderScale;
+	}
+	
+	// Renders the first frame after the view or scene changes coarseStride times coarser in each
+	// direction, then refines it over the idle frames after, halving the stride each frame. Once
+	// a full frame stands, render leaves it be until something changes. A stride of 1 turns it off
+	public void setProgressive(int coarseStride) {
+		coarsestStride = Math.max(coarseStride, 1);
+		invalidate();
+	}
+	
+	public int getStride() {
+		return stride;
+	}
+	
+	// Whether the last render drew anything, rather than leaving a refined frame be
+	public boolean wasRendered() {
+		return rendered;
+	}
+	
+	// Restarts progressive refinement after the planes, textures or lights fed have been changed
+	// in place, which the camera can't tell from one frame to the next
+	public void invalidate() {
+		invalidated = true;
+		if (temporalCache != null) {
+			temporalCache.invalidate();
+		}
+		if (dirtyRegions != null) {
+			dirtyRegions.invalidate();
+		}
+	}
+	
+	// Redraws only the rectangle of the screen that planes changed since the last frame may have
+	// changed, where they were, are and cast shadows, and load repacks only that rectangle into
+	// the pixels it was last given. A moved view or a changed light redraws everything, as does
+	// a frame under dynamic resolution, progressive refinement or a temporal cache
+	public void setDirtyRegions(boolean enabled) {
+		dirtyRegions = enabled ? new DirtyRegions() : null;
+		loadedPixels = null;
+		invalidate();
+	}
+	
+	public DirtyRegions getDirtyRegions() {
+		return dirtyRegions;
+	}
+	
+	// Reprojects the last frame into each new one and reuses its colors wherever the same plane
+	// was drawn from about the same point, shading only the pixels that have none to reuse
+	public void setTemporalCache(boolean enabled) {
+		temporalCache = enabled ? new TemporalCache(primaryShader) : null;
+		uncachedShader = enabled ? temporalCache.uncached(plainShader) : null;
+		allocate();
+		invalidate();
+		reset();
+	}
+	
+	public TemporalCache getTemporalCache() {
+		return temporalCache;
+	}
+	
+	public void setPrecision(Precision newPrecision) {
+		precision = newPrecision;
+		allocate();
+		invalidate();
+		reset();
+	}
+	
+	public Precision getPrecision() {
+		return precision;
+	}
+	
+	// Has shading write colors straight into a frame of packed RGB ints through the curve, rather
+	// than into a frame of precision that load then packs. Where the frame is the size of the
+	// pixels loaded, and without a temporal cache, which reads the last frame while writing the
+	// next, the frame takes the pixels over on the first load, and the renders after write into
+	// them directly, leaving load nothing to copy. Null goes back to precision
+	public void setDirectOutput(ToneCurve curve) {
+		directCurve = curve;
+		allocate();
+		invalidate();
+		reset();
+	}
+	
+	// Tone maps the frame as load packs it, rather than clamping every channel at 1. Has no effect
+	// under direct output, whose colors are packed as they're shaded
+	public void setToneMapper(ToneMapper mapper) {
+		toneMapper = mapper;
+		invalidate();
+	}
+	
+	private FrameBuffer createFrame() {
+		return directCurve == null ? FrameBuffer.create(precision, bufferWidth, bufferHeight) : new PackedFrameBuffer(bufferWidth, bufferHeight, directCurve);
+	}
+	
+	// Packs the depth buffer into 16 or 24 bit codes, or with a null encoding back to the precision
+	public void setDepthEncoding(DepthEncoding encoding, int bits) {
+		depthEncoding = encoding;
+		depthBits = bits;
+		allocate();
+		invalidate();
+		reset();
+	}
+	
 	public void setDefaultColor(double[] newDefaultRGB) {
 		defaultRGB = newDefaultRGB;
+		invalidate();
 	}
 	
 	public void setPosition(Vector newPosition) {
@@ -95,60 +299,286 @@ public class Camera extends ImageSource {
 		planes = newPlanes;
 		textures = newTextures;
 		lights = newLights;
+		invalidate();
+	}
+	
+	// Lightmaps from LightmapBaker, one for each plane fed or null, which shaders sample in
+	// place of the baked lights
+	public void setLightmaps(Lightmap[] newLightmaps) {
+		lightmaps = newLightmaps;
+		invalidate();
+	}
+	
+	public void feed(Scene scene) {
+		feed(scene.planes, scene.textures, scene.lights);
 	}
 	
 	public void render() {
-		reset();
-		Rotation momentOrientation = orientation.clone();
-		Vector momentDisplacement = displacement.clone();
-		primaryShader.preload(planes, lights, momentDisplacement);
+		render(true);
+	}
+	
+	// Renders with the shadow maps of the lights fed as they were last cast, rather than fitting
+	// them to this view and casting them, when castShadows is false
+	void render(boolean castShadows) {
+		boolean wasCulled = culled;
+		culled = false;
+		if (coarsestStride > 1) {
+			if (invalidated || moved()) {
+				stride = coarsestStride;
+			} else if (refined) {
+				rendered = false;
+				return;
+			} else {
+				stride = Math.max(stride/2, 1);
+			}
+		} else {
+			stride = 1;
+		}
+		invalidated = false;
+		rendered = true;
+		RenderEvent event = null;
+		if (RENDER_EVENT.isEnabled()) {
+			event = new RenderEvent();
+			event.begin();
+		}
+		frameStart = System.nanoTime();
+		double scale = (resolutionController == null ? 1 : resolutionController.getScale())/stride;
+		if (scale != renderScale) {
+			renderScale = scale;
+			rescale();
+		}
+		refined = stride == 1;
+		boolean partial = false;
+		if (dirtyRegions != null && resolutionController == null && coarsestStride == 1 && temporalCache == null) {
+			// Faces the shadow scheduler still owes change their maps, and so the light, anywhere
+			if (castShadows && !primaryShader.isSettled()) {
+				dirtyRegions.invalidate();
+			}
+			if (!dirtyRegions.update(planes, textures, lights, orientation, displacement, resolutionScalar, nearPlane, farPlane, WIDTH, HEIGHT)) {
+				rendered = false;
+				return;
+			}
+			span.left = dirtyRegions.left;
+			span.top = dirtyRegions.top;
+			span.right = dirtyRegions.right;
+			span.bottom = dirtyRegions.bottom;
+			partial = span.right - span.left < WIDTH || span.bottom - span.top < HEIGHT;
+		} else {
+			span.left = 0;
+			span.top = 0;
+			span.right = WIDTH;
+			span.bottom = HEIGHT;
+		}
+		if (loadRight <= loadLeft) {
+			loadLeft = span.left;
+			loadTop = span.top;
+			loadRight = span.right;
+			loadBottom = span.bottom;
+		} else {
+			loadLeft = Math.min(loadLeft, span.left);
+			loadTop = Math.min(loadTop, span.top);
+			loadRight = Math.max(loadRight, span.right);
+			loadBottom = Math.max(loadBottom, span.bottom);
+		}
+		int rasterized = 0;
+		Shader shader = primaryShader;
+		Shader lightSourceShader = plainShader;
+		if (temporalCache != null) {
+			FrameBuffer swap = previousFrame;
+			previousFrame = frame;
+			frame = swap;
+			plainShader.reshape(frame);
+			temporalCache.begin(frame, previousFrame, orientation, displacement, resolutionScalar, WIDTH, HEIGHT);
+			shader = temporalCache;
+			lightSourceShader = uncachedShader;
+		}
+		if (partial) {
+			zBuffer.clear(farPlane, span.left, span.top, span.right, span.bottom);
+			frame.clear(defaultRGB, span.left, span.top, span.right, span.bottom);
+		} else {
+			reset();
+		}
+		momentOrientation.set(orientation);
+		momentDisplacement.set(displacement);
+		if (!wasCulled) {
+			bound();
+		}
+		if (castShadows) {
+			for (Light light:lights) {
+				light.fit(momentDisplacement, momentOrientation, nearPlane, WIDTH/(2*resolutionScalar), HEIGHT/(2*resolutionScalar));
+				light.setReceivers(receivers);
+			}
+			shader.preload(planes, lights, momentDisplacement);
+		} else {
+			shader.preloadShared(planes, lights, momentDisplacement);
+		}
 		for (int i = 0; i < planes.length; i++) {
+			if (!receivers[i]) {
+				continue;
+			}
+			if (partial) {
+				projector.bound(planes[i], momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter, WIDTH, HEIGHT);
+				double[] bounds = projector.bounds;
+				if (bounds[1] < span.left - 1 || bounds[0] > span.right + 1 || bounds[3] < span.top - 1 || bounds[2] > span.bottom + 1) {
+					continue;
+				}
+			}
 			Shader planeShader;
 			Texture planeTexture = textures[i];
 			if (planeTexture.ISLIGHTSOURCE) {
-				planeShader = plainShader;
+				planeShader = lightSourceShader;
 			} else {
-				planeShader = primaryShader;
-			}
-			Plane projectedPlane = planes[i].subtract(momentDisplacement).project(momentOrientation).scale(resolutionScalar);
-			if (projectedPlane.testForUnflattening()) {
-				Plane[] clipPlanes = projectedPlane.clip(nearPlane);
-				
-				//System.out.println("PLANE " + i);
-				//planes[i].print();
-				
-				for (int j = 0; j < clipPlanes.length; j++) {
-				
-					//clipPlanes[j].print(1);
-					
-					Plane screenPlane = clipPlanes[j].flatten().add(screenCenter);
-					Plane[] cutPlanes = screenPlane.cut();
-					
-					//System.out.println("    Clip " + j);
-					//System.out.println("    Cut planes: " + cutPlanes.length);
-					
-					for (int k = 0; k < cutPlanes.length; k++) {
-						
-						//System.out.println("    Cut " + j + ", " + k);
-						//cutPlanes[k].print(2);
-						
-						planeTexture.write(cutPlanes[k], projectedPlane, planes[i], momentOrientation, momentDisplacement, WIDTH, HEIGHT, resolutionScalar, zBuffer, planeShader);
-					}
-				}
+				planeShader = shader;
+			}
+			int screenCount = projector.project(planes[i], momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter);
+			if (screenCount > 0) {
+				rasterized++;
+			}
+			span.plane = i;
+			span.lightmap = lightmaps == null ? null : lightmaps[i];
+			for (int k = 0; k < screenCount; k++) {
+				planeTexture.write(projector.screens[k], projector.projected, planes[i], momentOrientation, momentDisplacement, WIDTH, HEIGHT, resolutionScalar, zBuffer, span, planeShader);
+			}
+		}
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.width = WIDTH;
+				event.height = HEIGHT;
+				event.planes = planes.length;
+				event.lights = lights.length;
+				event.rasterized = rasterized;
+				event.commit();
 			}
 		}
 	}
 	
+	// Finds the planes that may reach the screen from where the camera is now, for a render that
+	// follows right after
+	boolean[] cull() {
+		bound();
+		culled = true;
+		return receivers;
+	}
+	
+	private void bound() {
+		if (receivers.length != planes.length) {
+			receivers = new boolean[planes.length];
+		}
+		for (int i = 0; i < planes.length; i++) {
+			receivers[i] = projector.bound(planes[i], displacement, orientation, resolutionScalar, nearPlane, screenCenter, WIDTH, HEIGHT);
+		}
+	}
+	
 	public void load(int[] pixels) {
-		int width = screenRGB.length;
-		int height = screenRGB[0].length;
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				int red = 65536*((int)(255*Math.min(screenRGB[x][y][0], 1)));
-				int blue = 256*((int)(255*Math.min(screenRGB[x][y][1], 1)));
-				int green = (int)(255*Math.min(screenRGB[x][y][2], 1));
-				pixels[x + (y*width)] = red + blue + green;
+		changedLeft = 0;
+		changedTop = 0;
+		changedRight = outputWidth;
+		changedBottom = outputHeight;
+		// A frame left be packs into the pixels it was last loaded into just as it did before
+		if (!rendered && toneMapper == null && pixels == loadedPixels) {
+			changedRight = 0;
+		}
+		if (WIDTH == outputWidth && HEIGHT == outputHeight && bufferWidth == outputWidth && bufferHeight == outputHeight) {
+			if (directCurve != null && temporalCache == null) {
+				((PackedFrameBuffer)frame).wrap(pixels);
+			}
+			// A tone mapper may expose the frame differently from the last, so it packs all of it
+			if (dirtyRegions != null && pixels == loadedPixels && toneMapper == null) {
+				frame.load(pixels, loadLeft, loadTop, loadRight, loadBottom);
+				changedLeft = loadLeft;
+				changedTop = loadTop;
+				changedRight = loadRight;
+				changedBottom = loadBottom;
+			} else {
+				pack(pixels);
+			}
+			loadRight = loadLeft;
+		} else {
+			if (scaledPixels.length != bufferWidth*bufferHeight || sourceColumns.length != outputWidth || sourceRows.length != outputHeight) {
+				scaledPixels = new int[bufferWidth*bufferHeight];
+				sourceColumns = new int[outputWidth];
+				columnWeights = new int[outputWidth];
+				sourceRows = new int[outputHeight];
+				rowWeights = new int[outputHeight];
+				sampled = false;
+			}
+			if (!sampled) {
+				samples(WIDTH, sourceColumns, columnWeights);
+				samples(HEIGHT, sourceRows, rowWeights);
+				sampled = true;
+			}
+			if (toneMapper == null) {
+				frame.load(scaledPixels, 0, 0, WIDTH, HEIGHT);
+			} else {
+				toneMapper.map(frame, scaledPixels, WIDTH, HEIGHT);
 			}
+			upsample(pixels);
 		}
+		loadedPixels = pixels;
+		// Coarse frames and frames left be say nothing about how long a full one takes
+		if (resolutionController != null && rendered && stride == 1) {
+			resolutionController.update((System.nanoTime() - frameStart)/1000000.0);
+		}
+	}
+	
+	public boolean getChanged(int[] bounds) {
+		bounds[0] = changedLeft;
+		bounds[1] = changedTop;
+		bounds[2] = changedRight;
+		bounds[3] = changedBottom;
+		return changedLeft < changedRight && changedTop < changedBottom;
+	}
+	
+	private void pack(int[] target) {
+		if (toneMapper == null) {
+			frame.load(target);
+		} else {
+			toneMapper.map(frame, target);
+		}
+	}
+	
+	private boolean moved() {
+		if (!Arrays.equals(displacement.getComponents(), momentDisplacement.getComponents())) {
+			return true;
+		}
+		for (int i = 0; i < 3; i++) {
+			if (!Arrays.equals(orientation.get(i).getComponents(), momentOrientation.get(i).getComponents())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// The source pixel to the left of each output pixel's centre, and how far towards the next, in 256ths
+	private static void samples(int sourceSize, int[] sources, int[] weights) {
+		for (int i = 0; i < sources.length; i++) {
+			double position = Math.min(Math.max((i + 0.5)*sourceSize/sources.length - 0.5, 0), sourceSize - 1);
+			sources[i] = (int)position;
+			weights[i] = (int)((position - sources[i])*256);
+		}
+	}
+	
+	private void upsample(int[] pixels) {
+		// Bilinear, with red and blue blended together in one int and green in another
+		for (int y = 0; y < outputHeight; y++) {
+			int row0 = sourceRows[y]*bufferWidth;
+			int row1 = Math.min(sourceRows[y] + 1, HEIGHT - 1)*bufferWidth;
+			int rowWeight = rowWeights[y];
+			for (int x = 0; x < outputWidth; x++) {
+				int column0 = sourceColumns[x];
+				int column1 = Math.min(column0 + 1, WIDTH - 1);
+				int columnWeight = columnWeights[x];
+				int top = blend(scaledPixels[row0 + column0], scaledPixels[row0 + column1], columnWeight);
+				int bottom = blend(scaledPixels[row1 + column0], scaledPixels[row1 + column1], columnWeight);
+				pixels[y*outputWidth + x] = blend(top, bottom, rowWeight);
+			}
+		}
+	}
+	
+	private static int blend(int a, int b, int weight) {
+		int redBlue = (((a & 0xff00ff)*(256 - weight) + (b & 0xff00ff)*weight) >>> 8) & 0xff00ff;
+		int green = (((a & 0xff00)*(256 - weight) + (b & 0xff00)*weight) >>> 8) & 0xff00;
+		return redBlue | green;
 	}
 }
@@ -23,53 +23,52 @@ public class ColorTexture extends Texture {
 		ISLIGHTSOURCE = makeLightSource;
 	}
 	
-	public void write(Plane screenPlane, Plane projectedPlane, Plane worldPlane, Rotation camOrientation, Vector camDisplacement, int width, int height, double resolutionScalar, double[][] zBuffer, Shader shader) {
-		//Extrema [min, max]
-		int[] yExtrema = screenPlane.getExtrema(1, new int[] {0, height});
-		int yMin = yExtrema[0];
-		int yMax = yExtrema[1];
-		
-		
-		//System.out.println(COLOR[0] + ", " + COLOR[1] + ", " + COLOR[2]);
-		//System.out.println("    Y min, max: " + yMin + ", " + yMax);
+	public void write(Plane screenPlane, Plane projectedPlane, Plane worldPlane, Rotation camOrientation, Vector camDisplacement, int width, int height, double resolutionScalar, DepthBuffer zBuffer, Span span, Shader shader) {
+		int yMin = screenPlane.getMinimum(1, span.top, Math.min(height, span.bottom));
+		int yMax = screenPlane.getMaximum(1, span.top, Math.min(height, span.bottom));
 		
 		double reverseScalar = 1/resolutionScalar;
 		int halfWidth = width/2;
 		int halfHeight = height/2;
 		Vector normal = worldPlane.getNormal();
 		double[] lineData = screenPlane.getLineData();
-		
-		//System.out.println(lineData[0] + ", " + lineData[1] + ", " + lineData[2] + ", " + lineData[3]);
+		double[] i = camOrientation.get(0).getComponents();
+		double[] j = camOrientation.get(1).getComponents();
+		double[] k = camOrientation.get(2).getComponents();
+		double[] d = camDisplacement.getComponents();
 		
 		for (int y = yMin; y < yMax; y++) {
-			int[] xIntercepts = new int[] {(int)((lineData[0]*y) + lineData[1]), (int)((lineData[2]*y) + lineData[3])};
-			int xMin = Math.min(Math.max(Math.min(xIntercepts[0], xIntercepts[1]), 0), width);
-			int xMax = Math.max(Math.min(Math.max(xIntercepts[0], xIntercepts[1])+1, width), 0);
-			
-			//System.out.println("    Y = " + y + ": " + xMin + ", " + xMax);
+			int xIntercept0 = (int)((lineData[0]*y) + lineData[1]);
+			int xIntercept1 = (int)((lineData[2]*y) + lineData[3]);
+			int xMin = Math.min(Math.max(Math.min(xIntercept0, xIntercept1), span.left), width);
+			int xMax = Math.max(Math.min(Math.max(xIntercept0, xIntercept1)+1, Math.min(width, span.right)), 0);
+			if (xMin >= xMax) {
+				continue;
+			}
+			double perspectiveY = (double)(y - halfHeight);
+			// The depth buffer may be wider than the view, which only takes up its left
+			span.pixel = zBuffer.index(xMin, y);
+			span.count = xMax - xMin;
 			
-			for (int x = xMin; x < xMax; x++) {
-				double perspectiveX = (double)(x - halfWidth);
-				double perspectiveY = (double)(y - halfHeight);
+			int s = zBuffer.testSpan(span.backend, projectedPlane, xMin, y, span.count, perspectiveY, halfWidth, 0, span);
+			if (s > 0) {
+				span.backend.unproject(span, xMin - halfWidth, perspectiveY, reverseScalar, camOrientation, camDisplacement);
+			}
+			for (; s < span.count; s++) {
+				double perspectiveX = (double)(xMin + s - halfWidth);
 				double z = projectedPlane.getDepthOfFlatPoint(perspectiveX, perspectiveY);
-				
-				/*
-				if (COLOR[2] == 1 && z < 0) {
-					System.out.println(x + ", " + y + ", " + z);
-				}*/
-				
-				if (z < zBuffer[x][y] && z > 0 && z == z) {
-					zBuffer[x][y] = z;
+				span.visible[s] = zBuffer.test(span.pixel + s, z);
+				if (span.visible[s]) {
 					double pointScalar = z*reverseScalar;
-					Vector projectedPoint = new Vector(new double[] {
-						perspectiveX*pointScalar, 
-						perspectiveY*-pointScalar, 
-						z
-					});
-					Vector worldPoint = camOrientation.rotated(projectedPoint).add(camDisplacement);
-					shader.draw(x, y, worldPoint, normal, COLOR.clone(), GLOSS, SPECULARITY);
+					double projectedX = perspectiveX*pointScalar;
+					double projectedY = perspectiveY*-pointScalar;
+					// camOrientation.rotated(projectedPoint).add(camDisplacement), without the vectors
+					span.x[s] = i[0]*projectedX + j[0]*projectedY + k[0]*z + d[0];
+					span.y[s] = i[1]*projectedX + j[1]*projectedY + k[1]*z + d[1];
+					span.z[s] = i[2]*projectedX + j[2]*projectedY + k[2]*z + d[2];
 				}
 			}
+			shader.drawSpan(span, normal, COLOR, GLOSS, SPECULARITY);
 		}
 	}
 }
@@ -0,0 +1,223 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+public class Compositor extends ImageSource {
+	private final ArrayList<ImageSource> layers = new ArrayList<>();
+	private final ArrayList<int[]> buffers = new ArrayList<>();
+	// The rectangle each layer's last load changed, as left, top, right and bottom
+	private final ArrayList<int[]> changes = new ArrayList<>();
+	private int width;
+	private int height;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private ExecutorService pool;
+	private final ArrayList<Callable<Object>> renders = new ArrayList<>();
+	private final ArrayList<Callable<Object>> bands = new ArrayList<>();
+	// The pixels last composited into, and whether all of them have to be composited again
+	private int[] loadedPixels;
+	private boolean invalidated = true;
+	// The rectangle being composited, and the lowest layer that shows through it
+	private int left;
+	private int top;
+	private int right;
+	private int bottom;
+	private int base;
+	private int loadedBase;
+	private int[] pixels;
+	private int composited;
+	public Compositor(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	// Adds a layer over all the others. Layers render at the same time on different threads, so
+	// no two may share a shader or lights, which every render writes shadow maps into
+	public void addLayer(ImageSource layer) {
+		layer.reshape(width, height);
+		layers.add(layer);
+		buffers.add(new int[width*height]);
+		changes.add(new int[4]);
+		renders.clear();
+		invalidated = true;
+	}
+	
+	public void removeLayer(ImageSource layer) {
+		int index = layers.indexOf(layer);
+		if (index < 0) {
+			return;
+		}
+		layers.remove(index);
+		buffers.remove(index);
+		changes.remove(index);
+		renders.clear();
+		invalidated = true;
+	}
+	
+	public void setThreads(int count) {
+		threads = Math.max(count, 1);
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		renders.clear();
+		bands.clear();
+	}
+	
+	// The pixels the last load composited, which leaves out those no layer changed
+	public int getComposited() {
+		return composited;
+	}
+	
+	public void reshape(int newWidth, int newHeight) {
+		width = newWidth;
+		height = newHeight;
+		for (int i = 0; i < layers.size(); i++) {
+			layers.get(i).reshape(width, height);
+			buffers.set(i, new int[width*height]);
+		}
+		invalidated = true;
+	}
+	
+	// Renders every layer into its own pixels, each on a thread of its own
+	public void render() {
+		if (threads == 1 || layers.size() < 2) {
+			for (int i = 0; i < layers.size(); i++) {
+				render(i);
+			}
+			return;
+		}
+		if (renders.isEmpty()) {
+			for (int i = 0; i < layers.size(); i++) {
+				int layer = i;
+				renders.add(Executors.callable(() -> render(layer)));
+			}
+		}
+		run(renders);
+	}
+	
+	private void render(int layer) {
+		ImageSource source = layers.get(layer);
+		source.render();
+		source.load(buffers.get(layer));
+		int[] changed = changes.get(layer);
+		if (!source.getChanged(changed)) {
+			changed[2] = changed[0];
+		}
+	}
+	
+	// Composites the rectangle any layer changed into pixels, bands of rows across the threads.
+	// Only the layers from the topmost opaque one up show, so changes beneath it don't count
+	public void load(int[] newPixels) {
+		base = 0;
+		for (int i = layers.size() - 1; i > 0; i--) {
+			if (layers.get(i).isOpaque()) {
+				base = i;
+				break;
+			}
+		}
+		if (invalidated || newPixels != loadedPixels || base != loadedBase) {
+			left = 0;
+			top = 0;
+			right = width;
+			bottom = height;
+		} else {
+			left = width;
+			top = height;
+			right = 0;
+			bottom = 0;
+			for (int i = base; i < layers.size(); i++) {
+				int[] changed = changes.get(i);
+				if (changed[0] < changed[2] && changed[1] < changed[3]) {
+					left = Math.min(left, Math.max(changed[0], 0));
+					top = Math.min(top, Math.max(changed[1], 0));
+					right = Math.max(right, Math.min(changed[2], width));
+					bottom = Math.max(bottom, Math.min(changed[3], height));
+				}
+			}
+		}
+		invalidated = false;
+		loadedPixels = newPixels;
+		loadedBase = base;
+		composited = 0;
+		if (layers.isEmpty() || left >= right || top >= bottom) {
+			return;
+		}
+		composited = (right - left)*(bottom - top);
+		if (threads == 1 || bottom - top < threads) {
+			composite(newPixels, top, bottom);
+			return;
+		}
+		if (bands.isEmpty()) {
+			for (int i = 0; i < threads; i++) {
+				int band = i;
+				bands.add(Executors.callable(() -> {
+					int rows = bottom - top;
+					composite(pixels, top + band*rows/threads, top + (band + 1)*rows/threads);
+				}));
+			}
+		}
+		pixels = newPixels;
+		try {
+			run(bands);
+		} finally {
+			pixels = null;
+		}
+	}
+	
+	private void composite(int[] target, int fromRow, int toRow) {
+		int[] below = buffers.get(base);
+		boolean opaque = layers.get(base).isOpaque();
+		for (int y = fromRow; y < toRow; y++) {
+			int row = y*width;
+			if (opaque) {
+				System.arraycopy(below, row + left, target, row + left, right - left);
+			} else {
+				blend(below, target, row + left, row + right, true);
+			}
+			for (int i = base + 1; i < layers.size(); i++) {
+				blend(buffers.get(i), target, row + left, row + right, false);
+			}
+		}
+	}
+	
+	// Blends the pixels of a layer with alpha over the target, or over black for the lowest one
+	private static void blend(int[] layer, int[] target, int from, int to, boolean overBlack) {
+		for (int i = from; i < to; i++) {
+			int color = layer[i];
+			int alpha = color >>> 24;
+			int under = overBlack ? 0 : target[i];
+			if (alpha == 255) {
+				target[i] = color & 0xffffff;
+			} else if (alpha == 0) {
+				target[i] = under;
+			} else {
+				int red = (((color >> 16) & 0xff)*alpha + ((under >> 16) & 0xff)*(255 - alpha) + 127)/255;
+				int green = (((color >> 8) & 0xff)*alpha + ((under >> 8) & 0xff)*(255 - alpha) + 127)/255;
+				int blue = ((color & 0xff)*alpha + (under & 0xff)*(255 - alpha) + 127)/255;
+				target[i] = (red << 16) | (green << 8) | blue;
+			}
+		}
+	}
+	
+	private void run(ArrayList<Callable<Object>> tasks) {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		try {
+			for (Future<Object> future:pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while compositing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Compositing failed", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package objects.util.graphics;
+
+import objects.util.graphics.geometry.*;
+
+public abstract class DepthBuffer {
+	protected final int width;
+	protected final int height;
+	protected final DepthLayout layout;
+	// Depths stored, with the padding the layout needs
+	protected final int capacity;
+	private final int tilesAcross;
+	public DepthBuffer(int width, int height) {
+		this(width, height, DepthLayout.ROW_MAJOR);
+	}
+	
+	public DepthBuffer(int width, int height, DepthLayout layout) {
+		this.width = width;
+		this.height = height;
+		this.layout = layout;
+		tilesAcross = (width + 7)/8;
+		switch (layout) {
+			case TILED:
+				capacity = tilesAcross*((height + 7)/8)*64;
+				break;
+			case MORTON:
+				int side = Integer.highestOneBit(Math.max(Math.max(width, height) - 1, 1))*2;
+				capacity = side*side;
+				break;
+			default:
+				capacity = width*height;
+		}
+	}
+	
+	public static DepthBuffer create(Precision precision, int width, int height) {
+		return create(precision, null, 0, DepthLayout.ROW_MAJOR, width, height, 0, 0);
+	}
+	
+	// A packed buffer when an encoding is given, a buffer of the given precision otherwise
+	public static DepthBuffer create(Precision precision, DepthEncoding encoding, int bits, DepthLayout layout, int width, int height, double near, double far) {
+		if (encoding != null) {
+			return PackedDepthBuffer.create(encoding, bits, layout, width, height, near, far);
+		}
+		switch (precision) {
+			case FLOAT:
+				return new FloatDepthBuffer(width, height, layout);
+			default:
+				return new DoubleDepthBuffer(width, height, layout);
+		}
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public DepthLayout getLayout() {
+		return layout;
+	}
+	
+	public final int index(int x, int y) {
+		switch (layout) {
+			case TILED:
+				return (((y >> 3)*tilesAcross + (x >> 3)) << 6) + ((y & 7) << 3) + (x & 7);
+			case MORTON:
+				return interleave(x) | (interleave(y) << 1);
+			default:
+				return y*width + x;
+		}
+	}
+	
+	// Spreads the low 16 bits of v into the even bits
+	private static int interleave(int v) {
+		v &= 0xFFFF;
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		return (v | (v << 1)) & 0x55555555;
+	}
+	
+	public abstract void clear(double depth);
+	
+	// Clears the depths from (x, y) = (left, top) up to but not including (right, bottom)
+	public void clear(double depth, int left, int top, int right, int bottom) {
+		for (int y = top; y < bottom; y++) {
+			for (int x = left; x < right; x++) {
+				set(index(x, y), depth);
+			}
+		}
+	}
+	
+	protected abstract void set(int index, double depth);
+	
+	public abstract double get(int index);
+	
+	// Keeps z at index when it is in front of the camera and closer than the depth already there
+	public abstract boolean test(int index, double z);
+	
+	// Whether a surface at z is no further than the depth at index
+	public boolean reaches(int index, double z) {
+		return get(index) >= z;
+	}
+	
+	// Whether any depth in the cross of (x, y) and its four neighbours is at or beyond z, the
+	// shadow test of PyramidLight
+	public boolean reaches(int x, int y, double z) {
+		return get(index(x, y)) >= z || 
+				Math.max(
+					Math.max(get(index(Math.max(x-1,0), y)),
+						get(index(Math.min(x+1,width-1), y))),
+					Math.max(get(index(x, Math.max(y-1,0))),
+						get(index(x, Math.min(y+1,height-1))))) >= z;
+	}
+	
+	// Depth tests a row of a plane from (xStart, y) in bulk, returning how many of the count depths
+	// it covered and leaving the rest to test. Fills span.depth and span.visible for those it
+	// covered when given a span, which it only does with the SIMD backend (which may be null)
+	public int testSpan(SimdBackend backend, Plane projectedPlane, int xStart, int y, int count, double perspectiveY, double halfWidth, double bias, Span span) {
+		return 0;
+	}
+}
@@ -0,0 +1,43 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+public enum DepthEncoding {
+	// (z - near)/(far - near), the same precision everywhere between the planes
+	NORMALIZED {
+		double encode(double z, double near, double far) {
+			return (z - near)/(far - near);
+		}
+		
+		double decode(double depth, double near, double far) {
+			return near + depth*(far - near);
+		}
+	},
+	// Reverse-Z, near/z with the far plane at 0 and the near plane at 1, which spends the
+	// precision close to the light or camera, like a perspective depth buffer. Stored flipped, so
+	// that a smaller code is always closer
+	REVERSE {
+		double encode(double z, double near, double far) {
+			return 1 - (near/z - near/far)/(1 - near/far);
+		}
+		
+		double decode(double depth, double near, double far) {
+			return near/((1 - depth)*(1 - near/far) + near/far);
+		}
+	},
+	// log(z/near)/log(far/near), the same precision relative to the depth everywhere
+	LOGARITHMIC {
+		double encode(double z, double near, double far) {
+			return Math.log(z/near)/Math.log(far/near);
+		}
+		
+		double decode(double depth, double near, double far) {
+			return near*Math.exp(depth*Math.log(far/near));
+		}
+	};
+	
+	// Maps z between near and far to a depth between 0 and 1, and back
+	abstract double encode(double z, double near, double far);
+	
+	abstract double decode(double depth, double near, double far);
+}
@@ -0,0 +1,11 @@
+package objects.util.graphics;
+
+public enum DepthLayout {
+	// Rows one after another, so that a row of a triangle is contiguous for the SIMD backend
+	ROW_MAJOR,
+	// 8x8 tiles, row-major inside and out, so that a lookup and the depths above and below it
+	// share a tile of a few cache lines
+	TILED,
+	// Z-order over a power of two square, which keeps nearby depths close in every direction
+	MORTON
+}
@@ -8,51 +8,117 @@ public class DirectShader extends Shader {
 	private Light[] lights;
  	private double ambience;
 	private Vector camLocation;
-	private double[][][] screenRGB;
+	private ShadowScheduler scheduler;
 	public DirectShader(double lightAmbience) {
 		ambience = lightAmbience;
 	}
 	
-	public void reshape(double[][][] newScreenRGB) {
-		screenRGB = newScreenRGB;
+	// Spreads shadow casts across frames under the scheduler's budget, in place of casting every
+	// light every frame
+	public void setShadowScheduler(ShadowScheduler newScheduler) {
+		scheduler = newScheduler;
 	}
-
+	
 	public void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
 		lights = newLights;
-		for (Light light: lights) {
-			light.cast(newPlanes);
+		if (scheduler != null) {
+			scheduler.update(newPlanes, lights, newCamLocation);
+		} else {
+			for (Light light: lights) {
+				light.cast(newPlanes);
+			}
 		}
 		camLocation = newCamLocation;
 	}
 	
-	public void draw(int x, int y, Vector point, Vector normal, double[] rgb, double gloss, int specularPower) {
-		double[] pixelRGB = new double[] {ambience, ambience, ambience};
+	public void preloadShared(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		lights = newLights;
+		camLocation = newCamLocation;
+	}
+	
+	public boolean isSettled() {
+		return scheduler == null || scheduler.isSettled();
+	}
+	
+	public void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower) {
+		draw(pixel, pointX, pointY, pointZ, normal, rgb, gloss, specularPower, -1, null);
+	}
+	
+	private void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower, int plane, Lightmap lightmap) {
+		double red = ambience;
+		double green = ambience;
+		double blue = ambience;
+		int texel = -1;
+		if (lightmap != null) {
+			texel = lightmap.texel(pointX, pointY, pointZ);
+			red += lightmap.red[texel];
+			green += lightmap.green[texel];
+			blue += lightmap.blue[texel];
+		}
+		double[] n = normal.getComponents();
+		double[] c = camLocation.getComponents();
+		double camX = c[0] - pointX;
+		double camY = c[1] - pointY;
+		double camZ = c[2] - pointZ;
+		double camMagnitude = Math.sqrt(camX*camX + camY*camY + camZ*camZ);
+		camX /= camMagnitude;
+		camY /= camMagnitude;
+		camZ /= camMagnitude;
 		for (Light light:lights) {
-			double attenuation = light.cast(point);
+			// Baked lights only add their specular highlight, with the attenuation they were baked with
+			int baked = texel < 0 ? -1 : lightmap.indexOf(light);
+			double attenuation = baked < 0 ? light.cast(plane, pointX, pointY, pointZ) : lightmap.attenuation[baked][texel];
 			if (attenuation > 0) {
-				//System.out.println("hello");
-				Vector ray = light.displacement.subtract(point);
-				ray.normalize();
-				double diffuse = Math.abs(normal.dot(ray));
-				Vector cam = camLocation.subtract(point);
-				cam.normalize();
-				Vector halfVector = cam.add(ray);
-				halfVector.normalize();
-				double specularDot = Math.abs(normal.dot(halfVector));
+				double rayX;
+				double rayY;
+				double rayZ;
+				if (light.isDirectional()) {
+					double[] k = light.orientation.get(2).getComponents();
+					rayX = -k[0];
+					rayY = -k[1];
+					rayZ = -k[2];
+				} else {
+					double[] l = light.displacement.getComponents();
+					rayX = l[0] - pointX;
+					rayY = l[1] - pointY;
+					rayZ = l[2] - pointZ;
+					double rayMagnitude = Math.sqrt(rayX*rayX + rayY*rayY + rayZ*rayZ);
+					rayX /= rayMagnitude;
+					rayY /= rayMagnitude;
+					rayZ /= rayMagnitude;
+				}
+				double diffuse = baked < 0 ? Math.abs(n[0]*rayX + n[1]*rayY + n[2]*rayZ) : 0;
+				double halfX = camX + rayX;
+				double halfY = camY + rayY;
+				double halfZ = camZ + rayZ;
+				double halfMagnitude = Math.sqrt(halfX*halfX + halfY*halfY + halfZ*halfZ);
+				halfX /= halfMagnitude;
+				halfY /= halfMagnitude;
+				halfZ /= halfMagnitude;
+				double specularDot = Math.abs(n[0]*halfX + n[1]*halfY + n[2]*halfZ);
 				double specular = 1;
 				for (int i = 0; i < specularPower; i++) {
 					specular *= specularDot;
 				}
 				double intensity = attenuation*(diffuse + gloss*specular);
-				pixelRGB[0] += intensity*light.rgb[0];
-				pixelRGB[1] += intensity*light.rgb[1];
-				pixelRGB[2] += intensity*light.rgb[2];
-
+				red += intensity*light.rgb[0];
+				green += intensity*light.rgb[1];
+				blue += intensity*light.rgb[2];
+			}
+		}
+		frame.write(pixel, red*rgb[0], green*rgb[1], blue*rgb[2]);
+	}
+	
+	public void drawSpan(Span span, Vector normal, double[] rgb, double gloss, int specularPower) {
+		int s = 0;
+		if (span.backend != null && span.lightmap == null) {
+			s = span.backend.shade(span, normal, rgb, gloss, specularPower, lights, ambience, camLocation);
+			frame.writeSpan(span, s);
+		}
+		for (; s < span.count; s++) {
+			if (span.visible[s]) {
+				draw(span.pixel + s, span.x[s], span.y[s], span.z[s], normal, rgb, gloss, specularPower, span.plane, span.lightmap);
 			}
 		}
-		pixelRGB[0] *= rgb[0];
-		pixelRGB[1] *= rgb[1];
-		pixelRGB[2] *= rgb[2];
-		screenRGB[x][y] = pixelRGB;
 	}
-}
\ No newline at end of file
+}
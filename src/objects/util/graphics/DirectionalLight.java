@@ -0,0 +1,418 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+import objects.util.graphics.events.ShadowCastEvent;
+import jdk.jfr.EventType;
+
+public class DirectionalLight extends Light {
+	private static final EventType SHADOW_CAST_EVENT = EventType.getEventType(ShadowCastEvent.class);
+	private int resolution;
+	private double intensity;
+	private int cascadeCount = 1;
+	private double shadowDistance = 100;
+	private Precision precision = Precision.DOUBLE;
+	private DepthLayout depthLayout = DepthLayout.ROW_MAJOR;
+	// One orthographic map per cascade, each a square of texelSizes on a side centred on its centre
+	private DepthBuffer[] maps;
+	private double[] centerUs;
+	private double[] centerVs;
+	private double[] texelSizes;
+	private double[] biases;
+	// The view depths each cascade ends at, and the depth behind every caster that map depths count from
+	private double[] splits;
+	private double depthOrigin;
+	// The light's orientation when the maps were built, which lookups project with until they are
+	// built again, as the scheduler may leave them for frames after the light turns
+	private final Rotation castOrientation = new Rotation();
+	// The view the maps were last fitted to, and the view given for the next cast, which may come
+	// frames later when casts are scheduled
+	private boolean fitted;
+	private final Vector viewLocation = new Vector();
+	private final Rotation viewOrientation = new Rotation();
+	private double viewNear;
+	private double viewTanX;
+	private double viewTanY;
+	private boolean nextFitted;
+	private final Vector nextLocation = new Vector();
+	private final Rotation nextOrientation = new Rotation();
+	private double nextNear;
+	private double nextTanX;
+	private double nextTanY;
+	// Casters are culled to the receivers when they are given, by their light space bounds
+	private boolean culling = true;
+	private boolean[] receivers;
+	private final double[] receiverBounds = new double[5];
+	// Light space corners of the plane being cast, and of whatever a map is fitted around
+	private final double[] corners = new double[9];
+	private final double[] cornerUs = new double[8];
+	private final double[] cornerVs = new double[8];
+	public DirectionalLight(int resolution, double[] lightRGB, double intensity, Rotation originalOrientation) {
+		// The light travels along k, and has no position
+		orientation = originalOrientation.clone();
+		displacement = new Vector();
+		castOrientation.set(orientation);
+		rgb = lightRGB.clone();
+		this.resolution = resolution;
+		this.intensity = intensity;
+		createMaps();
+	}
+	
+	private void createMaps() {
+		maps = new DepthBuffer[cascadeCount];
+		for (int i = 0; i < cascadeCount; i++) {
+			maps[i] = DepthBuffer.create(precision, null, 0, depthLayout, resolution, resolution, 0, 0);
+		}
+		centerUs = new double[cascadeCount];
+		centerVs = new double[cascadeCount];
+		texelSizes = new double[cascadeCount];
+		biases = new double[cascadeCount];
+		splits = new double[cascadeCount + 1];
+		reset();
+	}
+	
+	public void reset() {
+		for (DepthBuffer map:maps) {
+			map.clear(Double.POSITIVE_INFINITY);
+		}
+	}
+	
+	public boolean isDirectional() {
+		return true;
+	}
+	
+	// Splits the view from its near plane to the shadow distance into cascades, each with a map
+	// of its own, so that texels are packed closest where the viewer is
+	public void setCascades(int count) {
+		cascadeCount = count;
+		createMaps();
+	}
+	
+	// How far from the viewer shadows are cast, past which everything is lit
+	public void setShadowDistance(double distance) {
+		shadowDistance = distance;
+	}
+	
+	public void setPrecision(Precision newPrecision) {
+		precision = newPrecision;
+		createMaps();
+	}
+	
+	public void setDepthLayout(DepthLayout layout) {
+		depthLayout = layout;
+		createMaps();
+	}
+	
+	public void fit(Vector location, Rotation viewOrientation, double near, double tanX, double tanY) {
+		if (location == null) {
+			nextFitted = false;
+			return;
+		}
+		nextLocation.set(location);
+		nextOrientation.set(viewOrientation);
+		nextNear = near;
+		nextTanX = tanX;
+		nextTanY = tanY;
+		nextFitted = true;
+	}
+	
+	public void setReceivers(boolean[] newReceivers) {
+		receivers = newReceivers;
+	}
+	
+	public boolean[] getReceivers() {
+		return culling ? receivers : null;
+	}
+	
+	public void setCulling(boolean enabled) {
+		culling = enabled;
+	}
+	
+	public long fingerprint() {
+		long fingerprint = super.fingerprint();
+		fingerprint = 31*fingerprint + resolution;
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(intensity);
+		fingerprint = 31*fingerprint + cascadeCount;
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(shadowDistance);
+		return 31*fingerprint + precision.ordinal();
+	}
+	
+	public DirectionalLight clone() {
+		DirectionalLight clone = new DirectionalLight(resolution, rgb.clone(), intensity, orientation.clone());
+		clone.setCascades(cascadeCount);
+		clone.setShadowDistance(shadowDistance);
+		clone.setPrecision(precision);
+		clone.setDepthLayout(depthLayout);
+		clone.setCulling(culling);
+		return clone;
+	}
+	
+	public void cast(Plane[] planes) {
+		if (!SHADOW_CAST_EVENT.isEnabled()) {
+			rasterize(planes);
+			return;
+		}
+		ShadowCastEvent event = new ShadowCastEvent();
+		event.begin();
+		int rasterized = rasterize(planes);
+		event.end();
+		if (event.shouldCommit()) {
+			event.light = getClass().getSimpleName();
+			event.width = resolution;
+			event.height = resolution;
+			event.faces = fitted ? cascadeCount : 1;
+			event.planes = planes.length;
+			event.rasterized = rasterized;
+			event.commit();
+		}
+	}
+	
+	// Builds every cascade, or only the first without a view to split, returning how many planes
+	// were written to them, once for each cascade
+	private int rasterize(Plane[] planes) {
+		fitted = nextFitted;
+		int cascades = fitted ? cascadeCount : 1;
+		for (int c = 0; c < cascades; c++) {
+			maps[c].clear(Double.POSITIVE_INFINITY);
+		}
+		viewLocation.set(nextLocation);
+		viewOrientation.set(nextOrientation);
+		viewNear = nextNear;
+		viewTanX = nextTanX;
+		viewTanY = nextTanY;
+		castOrientation.set(orientation);
+		double[] u = castOrientation.get(0).getComponents();
+		double[] v = castOrientation.get(1).getComponents();
+		double[] w = castOrientation.get(2).getComponents();
+		// Every caster lies in front of the depth origin, however far off the view it is
+		double minW = Double.POSITIVE_INFINITY;
+		for (Plane plane:planes) {
+			for (Vector point:plane.points) {
+				double[] p = point.getComponents();
+				minW = Math.min(minW, p[0]*w[0] + p[1]*w[1] + p[2]*w[2]);
+			}
+		}
+		depthOrigin = minW - 1;
+		
+		if (fitted) {
+			fitView(u, v);
+		} else {
+			fitPlanes(planes, u, v);
+		}
+		boolean receiving = culling && receivers != null && receivers.length == planes.length;
+		if (receiving) {
+			for (int k = 0; k < 4; k += 2) {
+				receiverBounds[k] = Double.POSITIVE_INFINITY;
+				receiverBounds[k + 1] = Double.NEGATIVE_INFINITY;
+			}
+			receiverBounds[4] = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < planes.length; i++) {
+				if (receivers[i]) {
+					transform(planes[i], u, v, w);
+					for (int k = 0; k < 9; k += 3) {
+						receiverBounds[0] = Math.min(receiverBounds[0], corners[k]);
+						receiverBounds[1] = Math.max(receiverBounds[1], corners[k]);
+						receiverBounds[2] = Math.min(receiverBounds[2], corners[k + 1]);
+						receiverBounds[3] = Math.max(receiverBounds[3], corners[k + 1]);
+						receiverBounds[4] = Math.max(receiverBounds[4], corners[k + 2]);
+					}
+				}
+			}
+		}
+		// The cross a lookup compares reaches past the receivers by a texel
+		double margin = 0;
+		for (int c = 0; c < cascades; c++) {
+			margin = Math.max(margin, texelSizes[c]*2);
+		}
+		int rasterized = 0;
+		for (Plane plane:planes) {
+			transform(plane, u, v, w);
+			if (receiving) {
+				// Behind every receiver, or off to the side of them all
+				double[] r = receiverBounds;
+				double minU = Math.min(corners[0], Math.min(corners[3], corners[6]));
+				double maxU = Math.max(corners[0], Math.max(corners[3], corners[6]));
+				double minV = Math.min(corners[1], Math.min(corners[4], corners[7]));
+				double maxV = Math.max(corners[1], Math.max(corners[4], corners[7]));
+				double nearest = Math.min(corners[2], Math.min(corners[5], corners[8]));
+				if (nearest > r[4] || minU > r[1] + margin || maxU < r[0] - margin || minV > r[3] + margin || maxV < r[2] - margin) {
+					continue;
+				}
+			}
+			for (int c = 0; c < cascades; c++) {
+				if (rasterize(c)) {
+					rasterized++;
+				}
+			}
+		}
+		return rasterized;
+	}
+	
+	private void transform(Plane plane, double[] u, double[] v, double[] w) {
+		for (int k = 0; k < 3; k++) {
+			double[] p = plane.points[k].getComponents();
+			corners[k*3] = p[0]*u[0] + p[1]*u[1] + p[2]*u[2];
+			corners[k*3 + 1] = p[0]*v[0] + p[1]*v[1] + p[2]*v[2];
+			corners[k*3 + 2] = p[0]*w[0] + p[1]*w[1] + p[2]*w[2];
+		}
+	}
+	
+	private void fitView(double[] u, double[] v) {
+		// Practical split scheme, halfway between logarithmic and uniform splits
+		double far = Math.max(shadowDistance, viewNear*2);
+		for (int c = 0; c <= cascadeCount; c++) {
+			double fraction = (double)c/cascadeCount;
+			double logarithmic = viewNear*Math.pow(far/viewNear, fraction);
+			double uniform = viewNear + (far - viewNear)*fraction;
+			splits[c] = (logarithmic + uniform)/2;
+		}
+		double[] l = viewLocation.getComponents();
+		double[] i = viewOrientation.get(0).getComponents();
+		double[] j = viewOrientation.get(1).getComponents();
+		double[] k = viewOrientation.get(2).getComponents();
+		for (int c = 0; c < cascadeCount; c++) {
+			int corner = 0;
+			for (int end = 0; end < 2; end++) {
+				double depth = splits[c + end];
+				for (int sx = -1; sx <= 1; sx += 2) {
+					for (int sy = -1; sy <= 1; sy += 2) {
+						double x = l[0] + (k[0] + i[0]*sx*viewTanX + j[0]*sy*viewTanY)*depth;
+						double y = l[1] + (k[1] + i[1]*sx*viewTanX + j[1]*sy*viewTanY)*depth;
+						double z = l[2] + (k[2] + i[2]*sx*viewTanX + j[2]*sy*viewTanY)*depth;
+						cornerUs[corner] = x*u[0] + y*u[1] + z*u[2];
+						cornerVs[corner] = x*v[0] + y*v[1] + z*v[2];
+						corner++;
+					}
+				}
+			}
+			fitCascade(c, 8);
+		}
+	}
+	
+	private void fitPlanes(Plane[] planes, double[] u, double[] v) {
+		// Without a view, a single map holds every plane, and only the first is built and read
+		double minU = Double.POSITIVE_INFINITY;
+		double maxU = Double.NEGATIVE_INFINITY;
+		double minV = Double.POSITIVE_INFINITY;
+		double maxV = Double.NEGATIVE_INFINITY;
+		for (Plane plane:planes) {
+			for (Vector point:plane.points) {
+				double[] p = point.getComponents();
+				double pu = p[0]*u[0] + p[1]*u[1] + p[2]*u[2];
+				double pv = p[0]*v[0] + p[1]*v[1] + p[2]*v[2];
+				minU = Math.min(minU, pu);
+				maxU = Math.max(maxU, pu);
+				minV = Math.min(minV, pv);
+				maxV = Math.max(maxV, pv);
+			}
+		}
+		cornerUs[0] = minU;
+		cornerVs[0] = minV;
+		cornerUs[1] = maxU;
+		cornerVs[1] = maxV;
+		fitCascade(0, 2);
+		splits[0] = 0;
+		for (int c = 1; c <= cascadeCount; c++) {
+			splits[c] = Double.POSITIVE_INFINITY;
+		}
+	}
+	
+	private void fitCascade(int c, int corners) {
+		double minU = Double.POSITIVE_INFINITY;
+		double maxU = Double.NEGATIVE_INFINITY;
+		double minV = Double.POSITIVE_INFINITY;
+		double maxV = Double.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < corners; corner++) {
+			minU = Math.min(minU, cornerUs[corner]);
+			maxU = Math.max(maxU, cornerUs[corner]);
+			minV = Math.min(minV, cornerVs[corner]);
+			maxV = Math.max(maxV, cornerVs[corner]);
+		}
+		// A square map, with a texel of margin, centred on a whole texel so that it does not crawl as the view moves
+		double texelSize = Math.max(Math.max(maxU - minU, maxV - minV), 0.001)/(resolution - 2);
+		texelSizes[c] = texelSize;
+		centerUs[c] = Math.floor((minU + maxU)/2/texelSize)*texelSize;
+		centerVs[c] = Math.floor((minV + maxV)/2/texelSize)*texelSize;
+		biases[c] = texelSize*2;
+	}
+	
+	private boolean rasterize(int c) {
+		DepthBuffer map = maps[c];
+		double texelSize = texelSizes[c];
+		double offsetU = centerUs[c]/texelSize - resolution/2;
+		double offsetV = centerVs[c]/texelSize - resolution/2;
+		double x0 = corners[0]/texelSize - offsetU;
+		double y0 = corners[1]/texelSize - offsetV;
+		double z0 = corners[2] - depthOrigin;
+		double x1 = corners[3]/texelSize - offsetU;
+		double y1 = corners[4]/texelSize - offsetV;
+		double z1 = corners[5] - depthOrigin;
+		double x2 = corners[6]/texelSize - offsetU;
+		double y2 = corners[7]/texelSize - offsetV;
+		double z2 = corners[8] - depthOrigin;
+		int xMin = Math.max((int)Math.floor(Math.min(x0, Math.min(x1, x2))), 0);
+		int xMax = Math.min((int)Math.ceil(Math.max(x0, Math.max(x1, x2))), resolution);
+		int yMin = Math.max((int)Math.floor(Math.min(y0, Math.min(y1, y2))), 0);
+		int yMax = Math.min((int)Math.ceil(Math.max(y0, Math.max(y1, y2))), resolution);
+		double area = (x1 - x0)*(y2 - y0) - (x2 - x0)*(y1 - y0);
+		if (xMin >= xMax || yMin >= yMax || Math.abs(area) < 1e-12) {
+			// Off the map, or edge on to the light, where it covers no texel centre
+			return false;
+		}
+		// Depth is affine across an orthographic map, so it steps by a constant per texel
+		double depthX = ((z1 - z0)*(y2 - y0) - (z2 - z0)*(y1 - y0))/area;
+		double depthY = ((x1 - x0)*(z2 - z0) - (x2 - x0)*(z1 - z0))/area;
+		double sign = Math.signum(area);
+		double bias = biases[c];
+		for (int y = yMin; y < yMax; y++) {
+			double py = y + 0.5;
+			double px = xMin + 0.5;
+			// Edge functions at the row's first texel centre, positive inside for either winding
+			double e0 = sign*((x2 - x1)*(py - y1) - (y2 - y1)*(px - x1));
+			double e1 = sign*((x0 - x2)*(py - y2) - (y0 - y2)*(px - x2));
+			double e2 = sign*((x1 - x0)*(py - y0) - (y1 - y0)*(px - x0));
+			double step0 = -sign*(y2 - y1);
+			double step1 = -sign*(y0 - y2);
+			double step2 = -sign*(y1 - y0);
+			double z = z0 + (px - x0)*depthX + (py - y0)*depthY + bias;
+			for (int x = xMin; x < xMax; x++) {
+				if (e0 >= 0 && e1 >= 0 && e2 >= 0) {
+					map.test(map.index(x, y), z);
+				}
+				e0 += step0;
+				e1 += step1;
+				e2 += step2;
+				z += depthX;
+			}
+		}
+		return true;
+	}
+	
+	public double cast(double pointX, double pointY, double pointZ) {
+		int c = 0;
+		if (fitted) {
+			// The cascade that holds the point's depth in the view
+			double[] l = viewLocation.getComponents();
+			double[] k = viewOrientation.get(2).getComponents();
+			double depth = (pointX - l[0])*k[0] + (pointY - l[1])*k[1] + (pointZ - l[2])*k[2];
+			while (c < cascadeCount && depth > splits[c + 1]) {
+				c++;
+			}
+			if (c == cascadeCount) {
+				return intensity;
+			}
+		}
+		double[] u = castOrientation.get(0).getComponents();
+		double[] v = castOrientation.get(1).getComponents();
+		double[] w = castOrientation.get(2).getComponents();
+		double texelSize = texelSizes[c];
+		int x = (int)Math.floor((pointX*u[0] + pointY*u[1] + pointZ*u[2] - centerUs[c])/texelSize + resolution/2);
+		int y = (int)Math.floor((pointX*v[0] + pointY*v[1] + pointZ*v[2] - centerVs[c])/texelSize + resolution/2);
+		if (x < 0 || x >= resolution || y < 0 || y >= resolution) {
+			return intensity;
+		}
+		double z = pointX*w[0] + pointY*w[1] + pointZ*w[2] - depthOrigin;
+		return maps[c].reaches(x, y, z) ? intensity : 0;
+	}
+}
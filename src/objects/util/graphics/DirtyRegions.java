@@ -0,0 +1,215 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+
+public class DirtyRegions {
+	// The rectangle of the screen the last update left to redraw, from (left, top) up to but not
+	// including (right, bottom). Empty when right <= left
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+	// Every plane's corners and texture as of the last update, and the view it was made from
+	private double[] corners = new double[0];
+	private Texture[] planeTextures = new Texture[0];
+	private long lightsFingerprint;
+	private final double[] view = new double[12];
+	private double resolutionScalar;
+	private int width;
+	private int height;
+	private boolean invalidated = true;
+	// The screen box of the points included so far, and whether one couldn't be bounded
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private boolean unbounded;
+	public DirtyRegions() {}
+	
+	// Redraws everything on the next update
+	public void invalidate() {
+		invalidated = true;
+	}
+	
+	// Finds what changed since the last update and the rectangle of the screen it may have
+	// changed: where each changed plane was and is, and where its shadows may fall. A changed view,
+	// size or light, or a different number of planes, leaves the whole screen to redraw. Returns
+	// whether there is anything to redraw
+	public boolean update(Plane[] planes, Texture[] textures, Light[] lights, Rotation orientation, Vector displacement, double newResolutionScalar, double nearPlane, double farPlane, int newWidth, int newHeight) {
+		boolean full = invalidated || newWidth != width || newHeight != height || newResolutionScalar != resolutionScalar || corners.length != planes.length*9;
+		invalidated = false;
+		width = newWidth;
+		height = newHeight;
+		resolutionScalar = newResolutionScalar;
+		for (int i = 0; i < 3; i++) {
+			double[] basis = orientation.get(i).getComponents();
+			for (int axis = 0; axis < 3; axis++) {
+				full |= view[3*i + axis] != basis[axis];
+				view[3*i + axis] = basis[axis];
+			}
+		}
+		double[] d = displacement.getComponents();
+		for (int axis = 0; axis < 3; axis++) {
+			full |= view[9 + axis] != d[axis];
+			view[9 + axis] = d[axis];
+		}
+		long fingerprint = lights.length;
+		for (Light light:lights) {
+			fingerprint = 31*fingerprint + light.fingerprint();
+		}
+		full |= fingerprint != lightsFingerprint;
+		lightsFingerprint = fingerprint;
+		
+		if (full) {
+			if (corners.length != planes.length*9) {
+				corners = new double[planes.length*9];
+				planeTextures = new Texture[planes.length];
+			}
+			for (int i = 0; i < planes.length; i++) {
+				store(planes[i], i);
+				planeTextures[i] = textures[i];
+			}
+			left = 0;
+			top = 0;
+			right = width;
+			bottom = height;
+			return true;
+		}
+		minX = Double.POSITIVE_INFINITY;
+		maxX = Double.NEGATIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		maxY = Double.NEGATIVE_INFINITY;
+		unbounded = false;
+		for (int i = 0; i < planes.length && !unbounded; i++) {
+			if (planeTextures[i] == textures[i] && !moved(planes[i], i)) {
+				continue;
+			}
+			include(i, lights, nearPlane, farPlane);
+			store(planes[i], i);
+			planeTextures[i] = textures[i];
+			include(i, lights, nearPlane, farPlane);
+		}
+		if (unbounded) {
+			// The rest of the planes still have to be caught up for the next update
+			for (int i = 0; i < planes.length; i++) {
+				store(planes[i], i);
+				planeTextures[i] = textures[i];
+			}
+			left = 0;
+			top = 0;
+			right = width;
+			bottom = height;
+			return true;
+		}
+		// A pixel of margin either side for the rows and columns the rasterizer rounds into
+		left = (int)Math.max(Math.floor(minX) - 1, 0);
+		right = (int)Math.min(Math.ceil(maxX) + 2, width);
+		top = (int)Math.max(Math.floor(minY) - 1, 0);
+		bottom = (int)Math.min(Math.ceil(maxY) + 2, height);
+		return left < right && top < bottom;
+	}
+	
+	private boolean moved(Plane plane, int index) {
+		for (int corner = 0; corner < 3; corner++) {
+			double[] p = plane.points[corner].getComponents();
+			int offset = index*9 + corner*3;
+			if (corners[offset] != p[0] || corners[offset + 1] != p[1] || corners[offset + 2] != p[2]) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void store(Plane plane, int index) {
+		for (int corner = 0; corner < 3; corner++) {
+			System.arraycopy(plane.points[corner].getComponents(), 0, corners, index*9 + corner*3, 3);
+		}
+	}
+	
+	// Includes the stored plane and its shadow volume from every light, which is the triangle
+	// pushed away from the light until nothing in view could be further
+	private void include(int index, Light[] lights, double nearPlane, double farPlane) {
+		int offset = index*9;
+		double farthest = 0;
+		for (int corner = 0; corner < 3; corner++) {
+			double x = corners[offset + corner*3];
+			double y = corners[offset + corner*3 + 1];
+			double z = corners[offset + corner*3 + 2];
+			include(x, y, z, nearPlane);
+			double toX = x - view[9];
+			double toY = y - view[10];
+			double toZ = z - view[11];
+			farthest = Math.max(farthest, Math.sqrt(toX*toX + toY*toY + toZ*toZ));
+		}
+		for (Light light:lights) {
+			if (light.isDirectional()) {
+				// A prism along the light as long as the view is deep
+				double[] k = light.orientation.get(2).getComponents();
+				double length = farthest + farPlane;
+				for (int corner = 0; corner < 3; corner++) {
+					int c = offset + corner*3;
+					include(corners[c] + k[0]*length, corners[c + 1] + k[1]*length, corners[c + 2] + k[2]*length, nearPlane);
+				}
+				continue;
+			}
+			// A frustum from the light, scaled until every point of the triangle is past the
+			// light's range or the farthest point in view
+			double[] l = light.displacement.getComponents();
+			double toCameraX = view[9] - l[0];
+			double toCameraY = view[10] - l[1];
+			double toCameraZ = view[11] - l[2];
+			double reach = Math.min(light.getRange(), Math.sqrt(toCameraX*toCameraX + toCameraY*toCameraY + toCameraZ*toCameraZ) + farPlane);
+			double closest = distance(offset, l);
+			if (closest >= reach) {
+				continue;
+			}
+			if (closest <= 0) {
+				unbounded = true;
+				return;
+			}
+			double scale = reach/closest;
+			for (int corner = 0; corner < 3; corner++) {
+				int c = offset + corner*3;
+				include(l[0] + (corners[c] - l[0])*scale, l[1] + (corners[c + 1] - l[1])*scale, l[2] + (corners[c + 2] - l[2])*scale, nearPlane);
+			}
+		}
+	}
+	
+	// The distance from a point to the plane of the stored triangle, which no point of it is nearer than
+	private double distance(int offset, double[] point) {
+		double abX = corners[offset + 3] - corners[offset];
+		double abY = corners[offset + 4] - corners[offset + 1];
+		double abZ = corners[offset + 5] - corners[offset + 2];
+		double acX = corners[offset + 6] - corners[offset];
+		double acY = corners[offset + 7] - corners[offset + 1];
+		double acZ = corners[offset + 8] - corners[offset + 2];
+		double normalX = abY*acZ - abZ*acY;
+		double normalY = abZ*acX - abX*acZ;
+		double normalZ = abX*acY - abY*acX;
+		double magnitude = Math.sqrt(normalX*normalX + normalY*normalY + normalZ*normalZ);
+		if (magnitude == 0) {
+			return 0;
+		}
+		return Math.abs((point[0] - corners[offset])*normalX + (point[1] - corners[offset + 1])*normalY + (point[2] - corners[offset + 2])*normalZ)/magnitude;
+	}
+	
+	private void include(double x, double y, double z, double nearPlane) {
+		double relativeX = x - view[9];
+		double relativeY = y - view[10];
+		double relativeZ = z - view[11];
+		double depth = relativeX*view[6] + relativeY*view[7] + relativeZ*view[8];
+		if (depth <= nearPlane) {
+			unbounded = true;
+			return;
+		}
+		double scalar = resolutionScalar/depth;
+		double screenX = (relativeX*view[0] + relativeY*view[1] + relativeZ*view[2])*scalar + width/2;
+		double screenY = height/2 - (relativeX*view[3] + relativeY*view[4] + relativeZ*view[5])*scalar;
+		minX = Math.min(minX, screenX);
+		maxX = Math.max(maxX, screenX);
+		minY = Math.min(minY, screenY);
+		maxY = Math.max(maxY, screenY);
+	}
+}
@@ -0,0 +1,53 @@
+package objects.util.graphics;
+
+import java.util.Arrays;
+
+import objects.util.graphics.geometry.*;
+
+public class DoubleDepthBuffer extends DepthBuffer {
+	private final double[] depths;
+	public DoubleDepthBuffer(int width, int height) {
+		this(width, height, DepthLayout.ROW_MAJOR);
+	}
+	
+	public DoubleDepthBuffer(int width, int height, DepthLayout layout) {
+		super(width, height, layout);
+		depths = new double[capacity];
+	}
+	
+	public void clear(double depth) {
+		Arrays.fill(depths, depth);
+	}
+	
+	protected void set(int index, double depth) {
+		depths[index] = depth;
+	}
+	
+	public double get(int index) {
+		return depths[index];
+	}
+	
+	public boolean test(int index, double z) {
+		if (z < depths[index] && z > 0 && z == z) {
+			depths[index] = z;
+			return true;
+		}
+		return false;
+	}
+	
+	public boolean reaches(int x, int y, double z) {
+		return depths[index(x, y)] >= z || 
+				Math.max(
+					Math.max(depths[index(Math.max(x-1,0), y)],
+						depths[index(Math.min(x+1,width-1), y)]),
+					Math.max(depths[index(x, Math.max(y-1,0))],
+						depths[index(x, Math.min(y+1,height-1))])) >= z;
+	}
+	
+	public int testSpan(SimdBackend backend, Plane projectedPlane, int xStart, int y, int count, double perspectiveY, double halfWidth, double bias, Span span) {
+		if (backend == null || layout != DepthLayout.ROW_MAJOR || projectedPlane.getDepthMethod() != 3) {
+			return 0;
+		}
+		return backend.depthSpan(projectedPlane, xStart, count, perspectiveY, halfWidth, bias, depths, y*width + xStart, span);
+	}
+}
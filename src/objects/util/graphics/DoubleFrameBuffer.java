@@ -0,0 +1,76 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+public class DoubleFrameBuffer extends FrameBuffer {
+	private final double[] reds;
+	private final double[] greens;
+	private final double[] blues;
+	public DoubleFrameBuffer(int width, int height) {
+		super(width, height);
+		reds = new double[width*height];
+		greens = new double[width*height];
+		blues = new double[width*height];
+	}
+	
+	public void clear(double[] rgb) {
+		Arrays.fill(reds, rgb[0]);
+		Arrays.fill(greens, rgb[1]);
+		Arrays.fill(blues, rgb[2]);
+	}
+	
+	public void clear(double[] rgb, int left, int top, int right, int bottom) {
+		for (int y = top; y < bottom; y++) {
+			Arrays.fill(reds, y*width + left, y*width + right, rgb[0]);
+			Arrays.fill(greens, y*width + left, y*width + right, rgb[1]);
+			Arrays.fill(blues, y*width + left, y*width + right, rgb[2]);
+		}
+	}
+	
+	public void write(int pixel, double red, double green, double blue) {
+		reds[pixel] = red;
+		greens[pixel] = green;
+		blues[pixel] = blue;
+	}
+	
+	public double getRed(int pixel) {
+		return reds[pixel];
+	}
+	
+	public double getGreen(int pixel) {
+		return greens[pixel];
+	}
+	
+	public double getBlue(int pixel) {
+		return blues[pixel];
+	}
+	
+	public void load(int[] pixels) {
+		for (int i = 0; i < reds.length; i++) {
+			int red = 65536*((int)(255*Math.min(reds[i], 1)));
+			int green = 256*((int)(255*Math.min(greens[i], 1)));
+			int blue = (int)(255*Math.min(blues[i], 1));
+			pixels[i] = red + green + blue;
+		}
+	}
+	
+	public void load(int[] pixels, int left, int top, int right, int bottom) {
+		for (int y = top; y < bottom; y++) {
+			for (int i = y*width + left; i < y*width + right; i++) {
+				int red = 65536*((int)(255*Math.min(reds[i], 1)));
+				int green = 256*((int)(255*Math.min(greens[i], 1)));
+				int blue = (int)(255*Math.min(blues[i], 1));
+				pixels[i] = red + green + blue;
+			}
+		}
+	}
+	
+	public void load(int[] pixels, int left, int top, int right, int bottom, double exposure, ToneCurve curve) {
+		for (int y = top; y < bottom; y++) {
+			for (int i = y*width + left; i < y*width + right; i++) {
+				pixels[i] = curve.pack(reds[i]*exposure, greens[i]*exposure, blues[i]*exposure);
+			}
+		}
+	}
+}
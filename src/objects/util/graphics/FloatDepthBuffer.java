@@ -0,0 +1,55 @@
+package objects.util.graphics;
+
+import java.util.Arrays;
+
+import objects.util.graphics.geometry.*;
+
+public class FloatDepthBuffer extends DepthBuffer {
+	private final float[] depths;
+	public FloatDepthBuffer(int width, int height) {
+		this(width, height, DepthLayout.ROW_MAJOR);
+	}
+	
+	public FloatDepthBuffer(int width, int height, DepthLayout layout) {
+		super(width, height, layout);
+		depths = new float[capacity];
+	}
+	
+	public void clear(double depth) {
+		Arrays.fill(depths, (float) depth);
+	}
+	
+	protected void set(int index, double depth) {
+		depths[index] = (float) depth;
+	}
+	
+	public double get(int index) {
+		return depths[index];
+	}
+	
+	public boolean test(int index, double z) {
+		// Compared once rounded, so that a depth that passes is never equal to one already stored
+		float rounded = (float) z;
+		if (rounded < depths[index] && rounded > 0 && z == z) {
+			depths[index] = rounded;
+			return true;
+		}
+		return false;
+	}
+	
+	public int testSpan(SimdBackend backend, Plane projectedPlane, int xStart, int y, int count, double perspectiveY, double halfWidth, double bias, Span span) {
+		if (backend == null || layout != DepthLayout.ROW_MAJOR || projectedPlane.getDepthMethod() != 3) {
+			return 0;
+		}
+		return backend.depthSpan(projectedPlane, xStart, count, perspectiveY, halfWidth, bias, depths, y*width + xStart, span);
+	}
+	
+	public boolean reaches(int x, int y, double z) {
+		return depths[index(x, y)] >= z || 
+				Math.max(
+					Math.max(depths[index(Math.max(x-1,0), y)],
+						depths[index(Math.min(x+1,width-1), y)]),
+					Math.max(depths[index(x, Math.max(y-1,0))],
+						depths[index(x, Math.min(y+1,height-1))])) >= z;
+	}
+}
@@ -0,0 +1,76 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+public class FloatFrameBuffer extends FrameBuffer {
+	private final float[] reds;
+	private final float[] greens;
+	private final float[] blues;
+	public FloatFrameBuffer(int width, int height) {
+		super(width, height);
+		reds = new float[width*height];
+		greens = new float[width*height];
+		blues = new float[width*height];
+	}
+	
+	public void clear(double[] rgb) {
+		Arrays.fill(reds, (float) rgb[0]);
+		Arrays.fill(greens, (float) rgb[1]);
+		Arrays.fill(blues, (float) rgb[2]);
+	}
+	
+	public void clear(double[] rgb, int left, int top, int right, int bottom) {
+		for (int y = top; y < bottom; y++) {
+			Arrays.fill(reds, y*width + left, y*width + right, (float) rgb[0]);
+			Arrays.fill(greens, y*width + left, y*width + right, (float) rgb[1]);
+			Arrays.fill(blues, y*width + left, y*width + right, (float) rgb[2]);
+		}
+	}
+	
+	public void write(int pixel, double red, double green, double blue) {
+		reds[pixel] = (float) red;
+		greens[pixel] = (float) green;
+		blues[pixel] = (float) blue;
+	}
+	
+	public double getRed(int pixel) {
+		return reds[pixel];
+	}
+	
+	public double getGreen(int pixel) {
+		return greens[pixel];
+	}
+	
+	public double getBlue(int pixel) {
+		return blues[pixel];
+	}
+	
+	public void load(int[] pixels) {
+		for (int i = 0; i < reds.length; i++) {
+			int red = 65536*((int)(255*Math.min(reds[i], 1)));
+			int green = 256*((int)(255*Math.min(greens[i], 1)));
+			int blue = (int)(255*Math.min(blues[i], 1));
+			pixels[i] = red + green + blue;
+		}
+	}
+	
+	public void load(int[] pixels, int left, int top, int right, int bottom) {
+		for (int y = top; y < bottom; y++) {
+			for (int i = y*width + left; i < y*width + right; i++) {
+				int red = 65536*((int)(255*Math.min(reds[i], 1)));
+				int green = 256*((int)(255*Math.min(greens[i], 1)));
+				int blue = (int)(255*Math.min(blues[i], 1));
+				pixels[i] = red + green + blue;
+			}
+		}
+	}
+	
+	public void load(int[] pixels, int left, int top, int right, int bottom, double exposure, ToneCurve curve) {
+		for (int y = top; y < bottom; y++) {
+			for (int i = y*width + left; i < y*width + right; i++) {
+				pixels[i] = curve.pack(reds[i]*exposure, greens[i]*exposure, blues[i]*exposure);
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package objects.util.graphics;
+
+public abstract class FrameBuffer {
+	protected final int width;
+	protected final int height;
+	public FrameBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	public static FrameBuffer create(Precision precision, int width, int height) {
+		switch (precision) {
+			case FLOAT:
+				return new FloatFrameBuffer(width, height);
+			default:
+				return new DoubleFrameBuffer(width, height);
+		}
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public abstract void clear(double[] rgb);
+	
+	// Clears the pixels from (left, top) up to but not including (right, bottom)
+	public abstract void clear(double[] rgb, int left, int top, int right, int bottom);
+	
+	public abstract void write(int pixel, double red, double green, double blue);
+	
+	public abstract double getRed(int pixel);
+	
+	public abstract double getGreen(int pixel);
+	
+	public abstract double getBlue(int pixel);
+	
+	// Writes the visible colors among the first count fragments of a span
+	public void writeSpan(Span span, int count) {
+		for (int s = 0; s < count; s++) {
+			if (span.visible[s]) {
+				write(span.pixel + s, span.red[s], span.green[s], span.blue[s]);
+			}
+		}
+	}
+	
+	// Packs the colors into RGB ints, each channel clamped to 1
+	public abstract void load(int[] pixels);
+	
+	// Packs just the pixels from (left, top) up to but not including (right, bottom)
+	public abstract void load(int[] pixels, int left, int top, int right, int bottom);
+	
+	// Packs the pixels from (left, top) up to but not including (right, bottom), each channel
+	// scaled by exposure and put through the curve rather than clamped
+	public void load(int[] pixels, int left, int top, int right, int bottom, double exposure, ToneCurve curve) {
+		for (int y = top; y < bottom; y++) {
+			for (int i = y*width + left; i < y*width + right; i++) {
+				pixels[i] = curve.pack(getRed(i)*exposure, getGreen(i)*exposure, getBlue(i)*exposure);
+			}
+		}
+	}
+}
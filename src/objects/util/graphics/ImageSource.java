@@ -4,4 +4,20 @@ public abstract class ImageSource {
 	public abstract void reshape(int width, int height);
 	public abstract void render();
 	public abstract void load(int[] pixels);
+	
+	// Whether every pixel load writes is opaque. Sources that aren't carry alpha in the top byte of
+	// each pixel, from 0 for transparent to 255 for opaque, to composite over the ones beneath
+	public boolean isOpaque() {
+		return true;
+	}
+	
+	// Puts the rectangle of the pixels the last load changed into bounds, as left, top, right and
+	// bottom, and returns whether it changed any. By default every load changes all of them
+	public boolean getChanged(int[] bounds) {
+		bounds[0] = 0;
+		bounds[1] = 0;
+		bounds[2] = Integer.MAX_VALUE;
+		bounds[3] = Integer.MAX_VALUE;
+		return true;
+	}
 }
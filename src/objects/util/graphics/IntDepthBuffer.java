@@ -0,0 +1,23 @@
+package objects.util.graphics;
+
+import java.util.Arrays;
+
+public class IntDepthBuffer extends PackedDepthBuffer {
+	private final int[] codes;
+	public IntDepthBuffer(int width, int height, DepthLayout layout, DepthEncoding encoding, double near, double far) {
+		super(width, height, layout, encoding, near, far, 24);
+		codes = new int[capacity];
+	}
+	
+	protected int code(int index) {
+		return codes[index];
+	}
+	
+	protected void store(int index, int code) {
+		codes[index] = code;
+	}
+	
+	protected void fill(int code) {
+		Arrays.fill(codes, code);
+	}
+}
@@ -8,6 +8,8 @@ public abstract class Light {
 	public Rotation orientation;
 	public Vector displacement;
 	public double[] rgb;
+	// Never moves or changes, so LightmapBaker may bake it into the static planes
+	public boolean isStatic;
 	
 	public abstract void reset();
 	
@@ -15,5 +17,82 @@ public abstract class Light {
 	
 	public abstract void cast(Plane[] planes);
 	
-	public abstract double cast(Vector point);
-}
\ No newline at end of file
+	// Lights without a shadow map have nothing to store
+	public void setPrecision(Precision precision) {}
+	
+	public void setDepthEncoding(DepthEncoding encoding, int bits) {}
+	
+	public void setDepthLayout(DepthLayout layout) {}
+	
+	// Lights that classify the planes they cast, see PyramidLight.setClassifying
+	public void setClassifying(boolean enabled) {}
+	
+	// The planes the camera about to render may see, by index into the planes cast next, so that
+	// casters that can't shadow any of them are left out. Null leaves every caster in
+	public void setReceivers(boolean[] receivers) {}
+	
+	// The receivers the next cast culls casters to, or null when it leaves every caster in
+	public boolean[] getReceivers() {
+		return null;
+	}
+	
+	// Leaves casters out of shadow maps when they can't shadow anything, see setReceivers
+	public void setCulling(boolean enabled) {}
+	
+	// Lights that shine along their orientation's k from infinitely far, rather than from displacement
+	public boolean isDirectional() {
+		return false;
+	}
+	
+	// The view of the camera about to render, for lights whose shadow maps are fitted to it. The
+	// view spans tanX and tanY either side of its k for every unit of depth. A null location fits
+	// the maps to every plane cast instead, for maps shared by several views
+	public void fit(Vector location, Rotation viewOrientation, double near, double tanX, double tanY) {}
+	
+	// The lights whose casts make up this one's, each with a shadow map of its own that can be
+	// cast apart from the rest
+	public Light[] getFaces() {
+		return new Light[] {this};
+	}
+	
+	// How far the light reaches before it is too faint to change a pixel
+	public double getRange() {
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	public abstract double cast(double x, double y, double z);
+	
+	// Identifies the light's placement and settings, to tell when a baked lightmap is stale
+	public long fingerprint() {
+		long fingerprint = getClass().getName().hashCode();
+		for (double component:displacement.getComponents()) {
+			fingerprint = 31*fingerprint + Double.doubleToLongBits(component);
+		}
+		for (int i = 0; i < 3; i++) {
+			for (double component:orientation.get(i).getComponents()) {
+				fingerprint = 31*fingerprint + Double.doubleToLongBits(component);
+			}
+		}
+		for (double component:rgb) {
+			fingerprint = 31*fingerprint + Double.doubleToLongBits(component);
+		}
+		return fingerprint;
+	}
+	
+	// How the last cast(planes) left planes[plane], for lights that classify the planes they cast.
+	// Any other plane may hold a shadow edge anywhere, and so is PARTIAL
+	public ShadowClass getShadowClass(int plane) {
+		return ShadowClass.PARTIAL;
+	}
+	
+	// The attenuation at a point of planes[plane] from the last cast(planes), which may use the
+	// plane's shadow class in place of a lookup. A plane of -1 is any point
+	public double cast(int plane, double x, double y, double z) {
+		return cast(x, y, z);
+	}
+	
+	public double cast(Vector point) {
+		double[] components = point.getComponents();
+		return cast(components[0], components[1], components[2]);
+	}
+}
@@ -0,0 +1,62 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+
+public class Lightmap {
+	// A resolution x resolution grid over the triangle's (AB, AC) coordinates, as in
+	// Plane.getPoint, holding the diffuse light of the baked lights and each one's attenuation
+	// for the specular highlight computed live
+	public final int resolution;
+	public final Light[] lights;
+	public final float[] red;
+	public final float[] green;
+	public final float[] blue;
+	public final float[][] attenuation;
+	private final double[] origin;
+	// Dual basis of AB and AC, so that the dot products of p - A with u and v are p's coordinates
+	private final double[] u;
+	private final double[] v;
+	public Lightmap(Plane plane, int resolution, Light[] bakedLights) {
+		this.resolution = resolution;
+		lights = bakedLights;
+		red = new float[resolution*resolution];
+		green = new float[resolution*resolution];
+		blue = new float[resolution*resolution];
+		attenuation = new float[lights.length][resolution*resolution];
+		origin = plane.getPoint(0, 0).getComponents();
+		double[] ab = plane.getPoint(1, 0).subtract(plane.getPoint(0, 0)).getComponents();
+		double[] ac = plane.getPoint(0, 1).subtract(plane.getPoint(0, 0)).getComponents();
+		double abab = ab[0]*ab[0] + ab[1]*ab[1] + ab[2]*ab[2];
+		double abac = ab[0]*ac[0] + ab[1]*ac[1] + ab[2]*ac[2];
+		double acac = ac[0]*ac[0] + ac[1]*ac[1] + ac[2]*ac[2];
+		double determinant = abab*acac - abac*abac;
+		u = new double[3];
+		v = new double[3];
+		for (int i = 0; i < 3; i++) {
+			u[i] = (acac*ab[i] - abac*ac[i])/determinant;
+			v[i] = (abab*ac[i] - abac*ab[i])/determinant;
+		}
+	}
+	
+	// The texel holding a point of the plane
+	public int texel(double pointX, double pointY, double pointZ) {
+		double relativeX = pointX - origin[0];
+		double relativeY = pointY - origin[1];
+		double relativeZ = pointZ - origin[2];
+		int i = (int)((relativeX*u[0] + relativeY*u[1] + relativeZ*u[2])*resolution);
+		int j = (int)((relativeX*v[0] + relativeY*v[1] + relativeZ*v[2])*resolution);
+		return Math.min(Math.max(j, 0), resolution-1)*resolution + Math.min(Math.max(i, 0), resolution-1);
+	}
+	
+	// Where light is among the baked lights, or -1 when it has to be cast live
+	public int indexOf(Light light) {
+		for (int i = 0; i < lights.length; i++) {
+			if (lights[i] == light) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,231 @@
+package objects.util.graphics;
+
+import java.io.*;
+import java.lang.Math;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import objects.util.graphics.geometry.*;
+
+public class LightmapBaker {
+	private static final int MAGIC = 0x4C4D4150; // "LMAP"
+	private static final int VERSION = 1;
+	private double texelsPerUnit;
+	private int minimumResolution = 2;
+	private int maximumResolution = 128;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	public LightmapBaker(double texelsPerUnit) {
+		this.texelsPerUnit = texelsPerUnit;
+	}
+	
+	public void setResolutionLimits(int minimum, int maximum) {
+		minimumResolution = minimum;
+		maximumResolution = maximum;
+	}
+	
+	public void setThreads(int count) {
+		threads = count;
+	}
+	
+	// Loads the lightmaps from cache when it holds a bake of the same planes, flags, lights and
+	// settings, and bakes and saves them to it otherwise
+	public Lightmap[] bake(Plane[] planes, boolean[] staticPlanes, Light[] lights, File cache) throws IOException {
+		long key = key(planes, staticPlanes, lights);
+		Light[] baked = staticLights(lights);
+		if (cache.isFile()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+				Lightmap[] lightmaps = read(in, key, planes, baked);
+				if (lightmaps != null) {
+					return lightmaps;
+				}
+			} catch (EOFException e) {
+				// A truncated cache is baked again like a stale one
+			}
+		}
+		Lightmap[] lightmaps = bake(planes, staticPlanes, lights);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cache)))) {
+			write(out, key, lightmaps);
+		}
+		return lightmaps;
+	}
+	
+	// One lightmap for each static plane, null for the others, holding the light of every static
+	// light. Their shadow maps are cast from all the planes first, onto all of them, rather than
+	// fitted or culled to whatever view last rendered them
+	public Lightmap[] bake(Plane[] planes, boolean[] staticPlanes, Light[] lights) {
+		Light[] baked = staticLights(lights);
+		Lightmap[] lightmaps = new Lightmap[planes.length];
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			ArrayList<Callable<Object>> casts = new ArrayList<>();
+			for (Light light:baked) {
+				light.fit(null, null, 0, 0, 0);
+				light.setReceivers(null);
+				casts.add(Executors.callable(() -> light.cast(planes)));
+			}
+			run(pool, casts);
+			ArrayList<Callable<Object>> bakes = new ArrayList<>();
+			for (int i = 0; i < planes.length; i++) {
+				if (staticPlanes[i]) {
+					int index = i;
+					bakes.add(Executors.callable(() -> {
+						lightmaps[index] = bake(planes[index], baked);
+					}));
+				}
+			}
+			run(pool, bakes);
+		} finally {
+			pool.shutdown();
+		}
+		return lightmaps;
+	}
+	
+	private static void run(ExecutorService pool, ArrayList<Callable<Object>> tasks) {
+		try {
+			for (Future<Object> future:pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while baking lightmaps", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Baking lightmaps failed", e.getCause());
+		}
+	}
+	
+	private Lightmap bake(Plane plane, Light[] baked) {
+		Lightmap lightmap = new Lightmap(plane, resolution(plane), baked);
+		int resolution = lightmap.resolution;
+		double[] n = plane.getNormal().getComponents();
+		for (int j = 0; j < resolution; j++) {
+			for (int i = 0; i < resolution; i++) {
+				// Texel centres, including those past the hypotenuse, which lie on the plane all the same
+				double[] point = plane.getPoint((i + 0.5)/resolution, (j + 0.5)/resolution).getComponents();
+				int texel = j*resolution + i;
+				double red = 0;
+				double green = 0;
+				double blue = 0;
+				for (int k = 0; k < baked.length; k++) {
+					Light light = baked[k];
+					double attenuation = light.cast(point[0], point[1], point[2]);
+					lightmap.attenuation[k][texel] = (float) attenuation;
+					if (attenuation > 0) {
+						// The diffuse term of DirectShader.draw
+						double rayX;
+						double rayY;
+						double rayZ;
+						if (light.isDirectional()) {
+							double[] direction = light.orientation.get(2).getComponents();
+							rayX = -direction[0];
+							rayY = -direction[1];
+							rayZ = -direction[2];
+						} else {
+							double[] l = light.displacement.getComponents();
+							rayX = l[0] - point[0];
+							rayY = l[1] - point[1];
+							rayZ = l[2] - point[2];
+						}
+						double rayMagnitude = Math.sqrt(rayX*rayX + rayY*rayY + rayZ*rayZ);
+						double diffuse = Math.abs(n[0]*rayX + n[1]*rayY + n[2]*rayZ)/rayMagnitude;
+						red += attenuation*diffuse*light.rgb[0];
+						green += attenuation*diffuse*light.rgb[1];
+						blue += attenuation*diffuse*light.rgb[2];
+					}
+				}
+				lightmap.red[texel] = (float) red;
+				lightmap.green[texel] = (float) green;
+				lightmap.blue[texel] = (float) blue;
+			}
+		}
+		return lightmap;
+	}
+	
+	private int resolution(Plane plane) {
+		Vector a = plane.getPoint(0, 0);
+		double longest = Math.max(plane.getPoint(1, 0).subtract(a).getMagnitude(), plane.getPoint(0, 1).subtract(a).getMagnitude());
+		return Math.min(Math.max((int) Math.ceil(longest*texelsPerUnit), minimumResolution), maximumResolution);
+	}
+	
+	private static Light[] staticLights(Light[] lights) {
+		ArrayList<Light> baked = new ArrayList<>();
+		for (Light light:lights) {
+			if (light.isStatic) {
+				baked.add(light);
+			}
+		}
+		return baked.toArray(new Light[0]);
+	}
+	
+	private long key(Plane[] planes, boolean[] staticPlanes, Light[] lights) {
+		long key = VERSION;
+		key = 31*key + Double.doubleToLongBits(texelsPerUnit);
+		key = 31*key + minimumResolution;
+		key = 31*key + maximumResolution;
+		for (int i = 0; i < planes.length; i++) {
+			key = 31*key + (staticPlanes[i] ? 1 : 0);
+			for (int k = 0; k < 3; k++) {
+				double[] point = planes[i].getPoint(k == 1 ? 1 : 0, k == 2 ? 1 : 0).getComponents();
+				for (double component:point) {
+					key = 31*key + Double.doubleToLongBits(component);
+				}
+			}
+		}
+		for (Light light:lights) {
+			key = 31*key + (light.isStatic ? light.fingerprint() : 0);
+		}
+		return key;
+	}
+	
+	private static void write(DataOutputStream out, long key, Lightmap[] lightmaps) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(key);
+		out.writeInt(lightmaps.length);
+		for (Lightmap lightmap:lightmaps) {
+			out.writeBoolean(lightmap != null);
+			if (lightmap == null) {
+				continue;
+			}
+			out.writeInt(lightmap.resolution);
+			writeFloats(out, lightmap.red);
+			writeFloats(out, lightmap.green);
+			writeFloats(out, lightmap.blue);
+			for (float[] attenuation:lightmap.attenuation) {
+				writeFloats(out, attenuation);
+			}
+		}
+	}
+	
+	// The lightmaps, or null when the cache holds a different bake
+	private static Lightmap[] read(DataInputStream in, long key, Plane[] planes, Light[] baked) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != key || in.readInt() != planes.length) {
+			return null;
+		}
+		Lightmap[] lightmaps = new Lightmap[planes.length];
+		for (int i = 0; i < planes.length; i++) {
+			if (!in.readBoolean()) {
+				continue;
+			}
+			lightmaps[i] = new Lightmap(planes[i], in.readInt(), baked);
+			readFloats(in, lightmaps[i].red);
+			readFloats(in, lightmaps[i].green);
+			readFloats(in, lightmaps[i].blue);
+			for (float[] attenuation:lightmaps[i].attenuation) {
+				readFloats(in, attenuation);
+			}
+		}
+		return lightmaps;
+	}
+	
+	private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+		for (float value:values) {
+			out.writeFloat(value);
+		}
+	}
+	
+	private static void readFloats(DataInputStream in, float[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readFloat();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package objects.util.graphics;
+
+import java.util.ArrayList;
+
+import objects.util.graphics.geometry.*;
+
+public class MultiView {
+	private final ArrayList<Camera> views = new ArrayList<>();
+	private Plane[] planes = new Plane[] {};
+	private Texture[] textures = new Texture[] {};
+	private Light[] lights = new Light[] {};
+	private ShadowScheduler scheduler;
+	// The planes any view may see, which the shadow maps are culled to
+	private boolean[] receivers = new boolean[0];
+	public MultiView() {}
+	
+	// Adds a camera rendered from the scene fed here, which takes the place of what it was fed
+	public void addView(Camera view) {
+		view.feed(planes, textures, lights);
+		views.add(view);
+	}
+	
+	public void removeView(Camera view) {
+		views.remove(view);
+	}
+	
+	public void feed(Plane[] newPlanes, Texture[] newTextures, Light[] newLights) {
+		planes = newPlanes;
+		textures = newTextures;
+		lights = newLights;
+		for (Camera view:views) {
+			view.feed(planes, textures, lights);
+		}
+	}
+	
+	public void feed(Scene scene) {
+		feed(scene.planes, scene.textures, scene.lights);
+	}
+	
+	// Spreads the shared shadow casts across frames, prioritized for the first view
+	public void setShadowScheduler(ShadowScheduler newScheduler) {
+		scheduler = newScheduler;
+	}
+	
+	// Renders every view, each from its own camera, after casting every light once for all of
+	// them. Maps fitted to a view, such as DirectionalLight's cascades, are fitted to all the
+	// planes instead, and casters are culled to the planes that any view may see
+	public void render() {
+		if (receivers.length != planes.length) {
+			receivers = new boolean[planes.length];
+		} else {
+			for (int i = 0; i < receivers.length; i++) {
+				receivers[i] = false;
+			}
+		}
+		for (Camera view:views) {
+			boolean[] seen = view.cull();
+			for (int i = 0; i < receivers.length; i++) {
+				receivers[i] |= seen[i];
+			}
+		}
+		for (Light light:lights) {
+			light.fit(null, null, 0, 0, 0);
+			light.setReceivers(receivers);
+		}
+		if (scheduler != null && !views.isEmpty()) {
+			boolean settled = scheduler.isSettled();
+			scheduler.update(planes, lights, views.get(0).getPosition());
+			if (!settled) {
+				for (Camera view:views) {
+					if (view.getDirtyRegions() != null) {
+						view.getDirtyRegions().invalidate();
+					}
+				}
+			}
+		} else {
+			for (Light light:lights) {
+				light.cast(planes);
+			}
+		}
+		for (Camera view:views) {
+			view.render(false);
+		}
+	}
+}
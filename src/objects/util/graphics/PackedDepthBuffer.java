@@ -0,0 +1,136 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+
+public abstract class PackedDepthBuffer extends DepthBuffer {
+	private final DepthEncoding encoding;
+	private final double near;
+	private final double far;
+	private final int maximum;
+	// encode, with the constants folded in: codes are scale*f(z) + offset, where f is z, 1/z or log z
+	private final double scale;
+	private final double offset;
+	public PackedDepthBuffer(int width, int height, DepthLayout layout, DepthEncoding encoding, double near, double far, int bits) {
+		super(width, height, layout);
+		this.encoding = encoding;
+		this.near = near;
+		this.far = far;
+		maximum = (1 << bits) - 1;
+		switch (encoding) {
+			case NORMALIZED:
+				scale = maximum/(far - near);
+				offset = -near*scale;
+				break;
+			case REVERSE:
+				scale = -maximum*near/(1 - near/far);
+				offset = maximum - scale/far;
+				break;
+			default:
+				scale = maximum/Math.log(far/near);
+				offset = -Math.log(near)*scale;
+		}
+	}
+	
+	public static PackedDepthBuffer create(DepthEncoding encoding, int bits, DepthLayout layout, int width, int height, double near, double far) {
+		switch (bits) {
+			case 16:
+				return new ShortDepthBuffer(width, height, layout, encoding, near, far);
+			case 24:
+				return new IntDepthBuffer(width, height, layout, encoding, near, far);
+			default:
+				throw new IllegalArgumentException("Packed depth buffers hold 16 or 24 bits, not " + bits);
+		}
+	}
+	
+	public DepthEncoding getEncoding() {
+		return encoding;
+	}
+	
+	protected abstract int code(int index);
+	
+	protected abstract void store(int index, int code);
+	
+	protected abstract void fill(int code);
+	
+	// Rounds to the nearest code, clamped to the near and far planes. Same as
+	// encoding.encode(z, near, far)*maximum, which it stands in for in the depth test
+	public int encode(double z) {
+		double clamped = Math.min(Math.max(z, near), far);
+		double code;
+		switch (encoding) {
+			case NORMALIZED:
+				code = clamped*scale + offset;
+				break;
+			case REVERSE:
+				code = scale/clamped + offset;
+				break;
+			default:
+				code = Math.log(clamped)*scale + offset;
+		}
+		return Math.min(Math.max((int)(code + 0.5), 0), maximum);
+	}
+	
+	public double decode(int code) {
+		return encoding.decode((double) code/maximum, near, far);
+	}
+	
+	public void clear(double depth) {
+		fill(encode(depth));
+	}
+	
+	protected void set(int index, double depth) {
+		store(index, encode(depth));
+	}
+	
+	public double get(int index) {
+		return decode(code(index));
+	}
+	
+	public boolean test(int index, double z) {
+		if (z > 0) {
+			int code = encode(z);
+			if (code < code(index)) {
+				store(index, code);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public int testSpan(SimdBackend backend, Plane projectedPlane, int xStart, int y, int count, double perspectiveY, double halfWidth, double bias, Span span) {
+		if (encoding != DepthEncoding.REVERSE || span != null || projectedPlane.getDepthMethod() != 3) {
+			return 0;
+		}
+		// A biased depth's code is no longer affine along the row, so each depth is taken from the
+		// plane and encoded as test does, which keeps both paths passing the same fragments
+		for (int s = 0; s < count; s++) {
+			double z = projectedPlane.getDepthOfFlatPoint((double)(xStart + s - halfWidth), perspectiveY) + bias;
+			if (z > 0) {
+				int code = encode(z);
+				int index = index(xStart + s, y);
+				if (code < code(index)) {
+					store(index, code);
+				}
+			}
+		}
+		return count;
+	}
+	
+	public boolean reaches(int index, double z) {
+		return code(index) >= encode(z);
+	}
+	
+	public boolean reaches(int x, int y, double z) {
+		// Encoded once, so the cross is compared in integers. Encoding is monotonic, so a surface
+		// never falls behind its own depth, however coarse the codes
+		int code = encode(z);
+		return code(index(x, y)) >= code || 
+				Math.max(
+					Math.max(code(index(Math.max(x-1,0), y)),
+						code(index(Math.min(x+1,width-1), y))),
+					Math.max(code(index(x, Math.max(y-1,0))),
+						code(index(x, Math.min(y+1,height-1))))) >= code;
+	}
+}
@@ -0,0 +1,85 @@
+package objects.util.graphics;
+
+import java.util.Arrays;
+
+public class PackedFrameBuffer extends FrameBuffer {
+	// RGB ints as the screen takes them, each color put through the curve as it's written. They
+	// may be the pixels the frame was last loaded into, which it then shades straight into
+	private int[] colors;
+	private final ToneCurve curve;
+	public PackedFrameBuffer(int width, int height, ToneCurve curve) {
+		super(width, height);
+		this.curve = curve;
+		colors = new int[width*height];
+	}
+	
+	public ToneCurve getCurve() {
+		return curve;
+	}
+	
+	public void clear(double[] rgb) {
+		Arrays.fill(colors, curve.pack(rgb[0], rgb[1], rgb[2]));
+	}
+	
+	public void clear(double[] rgb, int left, int top, int right, int bottom) {
+		int color = curve.pack(rgb[0], rgb[1], rgb[2]);
+		for (int y = top; y < bottom; y++) {
+			Arrays.fill(colors, y*width + left, y*width + right, color);
+		}
+	}
+	
+	public void write(int pixel, double red, double green, double blue) {
+		colors[pixel] = curve.pack(red, green, blue);
+	}
+	
+	// Reading back only gets the level a color was rounded to
+	public double getRed(int pixel) {
+		return curve.value((colors[pixel] >> 16) & 0xff);
+	}
+	
+	public double getGreen(int pixel) {
+		return curve.value((colors[pixel] >> 8) & 0xff);
+	}
+	
+	public double getBlue(int pixel) {
+		return curve.value(colors[pixel] & 0xff);
+	}
+	
+	public void writeSpan(Span span, int count) {
+		for (int s = 0; s < count; s++) {
+			if (span.visible[s]) {
+				colors[span.pixel + s] = curve.pack(span.red[s], span.green[s], span.blue[s]);
+			}
+		}
+	}
+	
+	// Takes the pixels as the colors from here on, so that shading writes into them and loading
+	// them is left with nothing to copy. The colors so far are copied in once
+	public void wrap(int[] pixels) {
+		if (pixels != colors && pixels.length == colors.length) {
+			System.arraycopy(colors, 0, pixels, 0, colors.length);
+			colors = pixels;
+		}
+	}
+	
+	// Already packed, so loading is a copy, or nothing at all into the pixels wrapped
+	public void load(int[] pixels) {
+		if (pixels != colors) {
+			System.arraycopy(colors, 0, pixels, 0, colors.length);
+		}
+	}
+	
+	// Colors were put through their own curve when written, so exposure and the curve given are left out
+	public void load(int[] pixels, int left, int top, int right, int bottom, double exposure, ToneCurve curve) {
+		load(pixels, left, top, right, bottom);
+	}
+	
+	public void load(int[] pixels, int left, int top, int right, int bottom) {
+		if (pixels == colors) {
+			return;
+		}
+		for (int y = top; y < bottom; y++) {
+			System.arraycopy(colors, y*width + left, pixels, y*width + left, right - left);
+		}
+	}
+}
@@ -5,17 +5,12 @@ import java.lang.Math;
 import objects.util.graphics.geometry.*;
 
 public class PlainShader extends Shader {
-	private double[][][] screenRGB;
 	public PlainShader() {
 	}
-	
-	public void reshape(double[][][] newScreenRGB) {
-		screenRGB = newScreenRGB;
-	}
 
 	public void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {return;}
 	
-	public void draw(int x, int y, Vector point, Vector normal, double[] rgb, double gloss, int specularPower) {
-		screenRGB[x][y] = rgb;
+	public void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower) {
+		frame.write(pixel, rgb[0], rgb[1], rgb[2]);
 	}
 }
\ No newline at end of file
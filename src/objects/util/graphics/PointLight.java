@@ -3,8 +3,11 @@ package objects.util.graphics;
 import java.lang.Math;
 
 import objects.util.graphics.geometry.*;
+import objects.util.graphics.events.ShadowCastEvent;
+import jdk.jfr.EventType;
 
 public class PointLight extends Light {
+	private static final EventType SHADOW_CAST_EVENT = EventType.getEventType(ShadowCastEvent.class);
 	private PyramidLight[] sides;
 	private double halfAngle;
 	private int resolution;
@@ -13,6 +16,12 @@ public class PointLight extends Light {
 	private Vector screenCenter;
   private double brightness;
 	private final double tolerance = 0.001;
+	private Precision precision = Precision.DOUBLE;
+	private DepthEncoding depthEncoding;
+	private int depthBits;
+	private DepthLayout depthLayout = DepthLayout.ROW_MAJOR;
+	private boolean classifying;
+	private boolean culling = true;
 	public PointLight(int resolution, double minDistance, double maxDistance, double[] lightRGB, double intensity, Rotation originalOrientation, Vector originalDisplacement) {
     orientation = originalOrientation.clone();
     displacement = originalDisplacement.clone();
@@ -46,21 +55,132 @@ public class PointLight extends Light {
 		}
 	}
 	
+	public void setPrecision(Precision newPrecision) {
+		precision = newPrecision;
+		for (PyramidLight side:sides) {
+			side.setPrecision(precision);
+		}
+	}
+	
+	public void setDepthEncoding(DepthEncoding encoding, int bits) {
+		depthEncoding = encoding;
+		depthBits = bits;
+		for (PyramidLight side:sides) {
+			side.setDepthEncoding(encoding, bits);
+		}
+	}
+	
+	public void setDepthLayout(DepthLayout layout) {
+		depthLayout = layout;
+		for (PyramidLight side:sides) {
+			side.setDepthLayout(layout);
+		}
+	}
+	
+	public Light[] getFaces() {
+		return sides.clone();
+	}
+	
+	public double getRange() {
+		return sides[0].getRange();
+	}
+	
+	public long fingerprint() {
+		// The sides hold every setting that shapes the light
+		long fingerprint = super.fingerprint();
+		for (PyramidLight side:sides) {
+			fingerprint = 31*fingerprint + side.fingerprint();
+		}
+		return fingerprint;
+	}
+	
 	public PointLight clone() {
-		return new PointLight(resolution, nearPlane, farPlane, rgb.clone(), brightness, orientation.clone(), displacement.clone());
+		PointLight clone = new PointLight(resolution, nearPlane, farPlane, rgb.clone(), brightness, orientation.clone(), displacement.clone());
+		clone.setPrecision(precision);
+		clone.setDepthEncoding(depthEncoding, depthBits);
+		clone.setDepthLayout(depthLayout);
+		clone.setClassifying(classifying);
+		clone.setCulling(culling);
+		return clone;
 	}
 	
 	public void cast(Plane[] planes) {
+		if (!SHADOW_CAST_EVENT.isEnabled()) {
+			for (PyramidLight side:sides) {
+				side.rasterize(planes);
+			}
+			return;
+		}
+		ShadowCastEvent event = new ShadowCastEvent();
+		event.begin();
+		int rasterized = 0;
 		for (PyramidLight side:sides) {
-			side.cast(planes);
+			rasterized += side.rasterize(planes);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.light = getClass().getSimpleName();
+			event.width = resolution;
+			event.height = resolution;
+			event.faces = sides.length;
+			event.planes = planes.length;
+			event.rasterized = rasterized;
+			event.commit();
 		}
 	}
 	
-	public double cast(Vector point) {
-		double[] casts = new double[6];
-		for (int i = 0; i < 6; i++) {
-			casts[i] = sides[i].cast(point);
+	public double cast(double pointX, double pointY, double pointZ) {
+		return cast(-1, pointX, pointY, pointZ);
+	}
+	
+	public double cast(int plane, double pointX, double pointY, double pointZ) {
+		double cast = 0;
+		for (PyramidLight side:sides) {
+			cast = Math.max(cast, side.cast(plane, pointX, pointY, pointZ));
+		}
+		return cast;
+	}
+	
+	// Each point is lit by whichever sides reach it, so a plane is lit throughout when every side
+	// it lies on lights all of it, and shadowed when none of them light any of it
+	public ShadowClass getShadowClass(int plane) {
+		boolean lit = false;
+		boolean shadowed = false;
+		for (PyramidLight side:sides) {
+			if (side.isOutside(plane)) {
+				continue;
+			}
+			ShadowClass shadowClass = side.getShadowClass(plane);
+			if (shadowClass == ShadowClass.PARTIAL) {
+				return ShadowClass.PARTIAL;
+			}
+			lit |= shadowClass == ShadowClass.LIT;
+			shadowed |= shadowClass == ShadowClass.SHADOWED;
+		}
+		return lit && shadowed ? ShadowClass.PARTIAL : lit ? ShadowClass.LIT : ShadowClass.SHADOWED;
+	}
+	
+	public void setReceivers(boolean[] receivers) {
+		for (PyramidLight side:sides) {
+			side.setReceivers(receivers);
+		}
+	}
+	
+	public boolean[] getReceivers() {
+		return sides[0].getReceivers();
+	}
+	
+	public void setCulling(boolean enabled) {
+		culling = enabled;
+		for (PyramidLight side:sides) {
+			side.setCulling(enabled);
+		}
+	}
+	
+	public void setClassifying(boolean enabled) {
+		classifying = enabled;
+		for (PyramidLight side:sides) {
+			side.setClassifying(enabled);
 		}
-		return Math.max(Math.max(casts[0], casts[1]), Math.max(Math.max(casts[2], casts[3]), Math.max(casts[4], casts[5])));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package objects.util.graphics;
+
+public enum Precision {
+	// Framebuffers and depth buffers in double, as the renderer always used
+	DOUBLE,
+	// Framebuffers and depth buffers in float, half the memory and bandwidth. Depths keep 24
+	// significant bits, so two surfaces closer than about z/16,000,000 of each other may fight,
+	// and colors keep far more precision than the 8 bits they are packed into
+	FLOAT
+}
@@ -3,18 +3,43 @@ package objects.util.graphics;
 import java.lang.Math;
 
 import objects.util.graphics.geometry.*;
+import objects.util.graphics.events.ShadowCastEvent;
+import jdk.jfr.EventType;
 
 public class PyramidLight extends Light {
+	private static final EventType SHADOW_CAST_EVENT = EventType.getEventType(ShadowCastEvent.class);
 	private double halfAngle;
-	private int resolutionWidth;
+	protected int resolutionWidth;
 	private int resolutionHeight;
-  private double nearPlane;
-  private double farPlane;
+  protected double nearPlane;
+  protected double farPlane;
 	private double resolutionScalar;
 	private Vector screenCenter;
-  private double brightness;
-	private double[][] rayDepths;
+  protected double brightness;
+	private DepthBuffer rayDepths;
+	private Precision precision = Precision.DOUBLE;
+	private DepthEncoding depthEncoding;
+	private int depthBits;
+	private DepthLayout depthLayout = DepthLayout.ROW_MAJOR;
+	private final SimdBackend backend = SimdBackend.get();
 	private final double tolerance = 0.001;
+	// Per-plane shadow classes of the last cast, from how many of the texels each plane covers it reaches
+	private boolean classifying;
+	private ShadowClass[] classes = new ShadowClass[0];
+	// Which planes were classified as shadowed for lying off the map, rather than for being occluded
+	private boolean[] outside = new boolean[0];
+	private int classCount;
+	// Casters are culled to the map, the light's range and, when they are given, the receivers
+	private boolean culling = true;
+	private boolean[] receivers;
+	private final double[] receiverBounds = new double[6];
+	// The span of each row that lookups can reach, for lights that only look up part of their map
+	private int[] rowStarts;
+	private int[] rowEnds;
+	private final ScreenProjector projector = new ScreenProjector();
+	// The pose the map was last cast from, which lookups project into it with until the next cast
+	protected final Rotation momentOrientation = new Rotation();
+	protected final Vector momentDisplacement = new Vector();
 	public PyramidLight(int width, int height, double angle, double minDistance, double maxDistance, double[] lightRGB, double intensity, Rotation originalOrientation, Vector originalDisplacement) {
     orientation = originalOrientation.clone();
     displacement = originalDisplacement.clone();
@@ -22,95 +47,331 @@ public class PyramidLight extends Light {
     resolutionHeight = height;
     halfAngle = angle/2;
     rgb = lightRGB.clone();
-		rayDepths = new double[resolutionWidth][resolutionHeight];
 		nearPlane = minDistance;
     farPlane = maxDistance;
+		rayDepths = createDepths();
     reset();
 		screenCenter = new Vector(new double[] {resolutionWidth/2, resolutionHeight/2, 0});
 		resolutionScalar = Math.max(resolutionWidth,resolutionHeight)/(2*Math.tan(halfAngle));
     brightness = intensity;
+		momentOrientation.set(orientation);
+		momentDisplacement.set(displacement);
 	}
 	
 	public void reset() {
-		for (int i = 0; i < rayDepths.length; i++) {
-			for (int j = 0; j < rayDepths[0].length; j++) {
-				rayDepths[i][j] = farPlane;
-			}
-		}
+		rayDepths.clear(farPlane);
+	}
+	
+	public void setPrecision(Precision newPrecision) {
+		precision = newPrecision;
+		rayDepths = createDepths();
+		reset();
+	}
+	
+	public void setDepthEncoding(DepthEncoding encoding, int bits) {
+		depthEncoding = encoding;
+		depthBits = bits;
+		rayDepths = createDepths();
+		reset();
+	}
+	
+	public void setDepthLayout(DepthLayout layout) {
+		depthLayout = layout;
+		rayDepths = createDepths();
+		reset();
+	}
+	
+	// Classifies every plane cast as lit, shadowed or partial, so that lookups for points of lit
+	// and shadowed planes skip the shadow map. Costs a second pass over the map on every cast
+	public void setClassifying(boolean enabled) {
+		classifying = enabled;
+		classCount = 0;
+	}
+	
+	public double getRange() {
+		// Where brightness/distance^2 falls under a 1024th, a quarter of an 8 bit step
+		return Math.min(Math.sqrt(brightness*1024), farPlane);
+	}
+	
+	public void setReceivers(boolean[] newReceivers) {
+		receivers = newReceivers;
+	}
+	
+	public boolean[] getReceivers() {
+		return culling ? receivers : null;
+	}
+	
+	public void setCulling(boolean enabled) {
+		culling = enabled;
+	}
+	
+	public ShadowClass getShadowClass(int plane) {
+		return plane >= 0 && plane < classCount ? classes[plane] : ShadowClass.PARTIAL;
+	}
+	
+	// Whether the plane was classified as shadowed for lying off the map, where other lights, such
+	// as the other sides of a PointLight, may take over
+	boolean isOutside(int plane) {
+		return plane >= 0 && plane < classCount && outside[plane];
+	}
+	
+	private DepthBuffer createDepths() {
+		return DepthBuffer.create(precision, depthEncoding, depthBits, depthLayout, resolutionWidth, resolutionHeight, nearPlane, farPlane);
+	}
+	
+	public long fingerprint() {
+		long fingerprint = super.fingerprint();
+		fingerprint = 31*fingerprint + resolutionWidth;
+		fingerprint = 31*fingerprint + resolutionHeight;
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(halfAngle);
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(nearPlane);
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(farPlane);
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(brightness);
+		fingerprint = 31*fingerprint + precision.ordinal();
+		return 31*fingerprint + (depthEncoding == null ? -1 : depthEncoding.ordinal()*32 + depthBits);
+	}
+	
+	void setRows(int[] starts, int[] ends) {
+		rowStarts = starts;
+		rowEnds = ends;
 	}
 	
 	public PyramidLight clone() {
-		return new PyramidLight(resolutionWidth, resolutionHeight, halfAngle*2, nearPlane, farPlane, rgb.clone(), brightness, orientation.clone(), displacement.clone());
+		PyramidLight clone = new PyramidLight(resolutionWidth, resolutionHeight, halfAngle*2, nearPlane, farPlane, rgb.clone(), brightness, orientation.clone(), displacement.clone());
+		copySettings(clone);
+		return clone;
+	}
+	
+	void copySettings(PyramidLight clone) {
+		clone.setPrecision(precision);
+		clone.setDepthEncoding(depthEncoding, depthBits);
+		clone.setDepthLayout(depthLayout);
+		clone.setClassifying(classifying);
+		clone.setCulling(culling);
 	}
 	
 	public void cast(Plane[] planes) {
+		if (!SHADOW_CAST_EVENT.isEnabled()) {
+			rasterize(planes);
+			return;
+		}
+		ShadowCastEvent event = new ShadowCastEvent();
+		event.begin();
+		int rasterized = rasterize(planes);
+		event.end();
+		if (event.shouldCommit()) {
+			event.light = getClass().getSimpleName();
+			event.width = resolutionWidth;
+			event.height = resolutionHeight;
+			event.faces = 1;
+			event.planes = planes.length;
+			event.rasterized = rasterized;
+			event.commit();
+		}
+	}
+	
+	int rasterize(Plane[] planes) {
 		reset();
-		Rotation momentOrientation = orientation.clone();
-		Vector momentDisplacement = displacement.clone();
+		int rasterized = 0;
+		momentOrientation.set(orientation);
+		momentDisplacement.set(displacement);
+		int halfWidth = resolutionWidth/2;
+		int halfHeight = resolutionHeight/2;
+		boolean receiving = boundReceivers(planes);
 		
 		for (int i = 0; i < planes.length; i++) {
-			Plane projectedPlane = planes[i].subtract(momentDisplacement).project(momentOrientation).scale(resolutionScalar);
-			if (projectedPlane.testForUnflattening()) {
-				Plane[] clipPlanes = projectedPlane.clip(nearPlane);
-				for (int j = 0; j < clipPlanes.length; j++) {
-					Plane[] cutPlanes = clipPlanes[j].flatten().add(screenCenter).cut();
-					for (int k = 0; k < cutPlanes.length; k++) {
-						Plane screenPlane = cutPlanes[k];
-						int[] yExtrema = screenPlane.getExtrema(1, new int[] {0, resolutionHeight});
-						int yMin = yExtrema[0];
-						int yMax = yExtrema[1];
-						
-						int halfWidth = resolutionWidth/2;
-						int halfHeight = resolutionHeight/2;
-						double[] lineData = screenPlane.getLineData();
-						for (int y = yMin; y < yMax; y++) {
-							int[] xIntercepts = new int[] {(int)((lineData[0]*y) + lineData[1]), (int)((lineData[2]*y) + lineData[3])};
-							int xMin = Math.min(Math.max(Math.min(xIntercepts[0], xIntercepts[1]), 0), resolutionWidth);
-							int xMax = Math.max(Math.min(Math.max(xIntercepts[0], xIntercepts[1])+1, resolutionWidth), 0);
-							for (int x = xMin; x < xMax; x++) {
-								double z = projectedPlane.getDepthOfFlatPoint((double)(x - halfWidth), (double)(y - halfHeight)) + tolerance;
-								if (z < rayDepths[x][y] && z > 0 && z == z) {
-									rayDepths[x][y] = z;
-								}
-							}
+			if (culling && culled(planes[i], receiving)) {
+				continue;
+			}
+			int screenCount = projector.project(planes[i], momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter);
+			if (screenCount > 0) {
+				rasterized++;
+			}
+			Plane projectedPlane = projector.projected;
+			for (int k = 0; k < screenCount; k++) {
+				Plane screenPlane = projector.screens[k];
+				int yMin = screenPlane.getMinimum(1, 0, resolutionHeight);
+				int yMax = screenPlane.getMaximum(1, 0, resolutionHeight);
+				double[] lineData = screenPlane.getLineData();
+				for (int y = yMin; y < yMax; y++) {
+					int xIntercept0 = (int)((lineData[0]*y) + lineData[1]);
+					int xIntercept1 = (int)((lineData[2]*y) + lineData[3]);
+					int xMin = Math.min(Math.max(Math.min(xIntercept0, xIntercept1), 0), resolutionWidth);
+					int xMax = Math.max(Math.min(Math.max(xIntercept0, xIntercept1)+1, resolutionWidth), 0);
+					if (rowStarts != null) {
+						xMin = Math.max(xMin, rowStarts[y]);
+						xMax = Math.min(xMax, rowEnds[y]);
+					}
+					int x = xMin;
+					if (xMin < xMax) {
+						x += rayDepths.testSpan(backend, projectedPlane, xMin, y, xMax - xMin, (double)(y - halfHeight), halfWidth, tolerance, null);
+					}
+					for (; x < xMax; x++) {
+						double z = projectedPlane.getDepthOfFlatPoint((double)(x - halfWidth), (double)(y - halfHeight)) + tolerance;
+						rayDepths.test(rayDepths.index(x, y), z);
+					}
+				}
+			}
+		}
+		if (classifying) {
+			classify(planes);
+		}
+		return rasterized;
+	}
+	
+	// Whether a caster is off the map, too far to light anything, or past every receiver in depth
+	// or on the map
+	private boolean culled(Plane plane, boolean receiving) {
+		if (!projector.bound(plane, momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter, resolutionWidth, resolutionHeight)) {
+			return true;
+		}
+		double[] b = projector.bounds;
+		double[] r = receiverBounds;
+		return b[4] > getRange() || (receiving && (b[4] > r[5] || b[0] > r[1] + 2 || b[1] < r[0] - 2 || b[2] > r[3] + 2 || b[3] < r[2] - 2));
+	}
+	
+	// Bounds the receivers on the map, returning whether there are receivers to cull casters to
+	private boolean boundReceivers(Plane[] planes) {
+		if (!culling || receivers == null || receivers.length != planes.length) {
+			return false;
+		}
+		receiverBounds[0] = Double.POSITIVE_INFINITY;
+		receiverBounds[1] = Double.NEGATIVE_INFINITY;
+		receiverBounds[2] = Double.POSITIVE_INFINITY;
+		receiverBounds[3] = Double.NEGATIVE_INFINITY;
+		receiverBounds[4] = Double.POSITIVE_INFINITY;
+		receiverBounds[5] = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < planes.length; i++) {
+			if (receivers[i] && projector.bound(planes[i], momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter, resolutionWidth, resolutionHeight)) {
+				double[] b = projector.bounds;
+				for (int k = 0; k < 6; k += 2) {
+					receiverBounds[k] = Math.min(receiverBounds[k], b[k]);
+					receiverBounds[k + 1] = Math.max(receiverBounds[k + 1], b[k + 1]);
+				}
+			}
+		}
+		return true;
+	}
+	
+	private void classify(Plane[] planes) {
+		if (classes.length < planes.length) {
+			classes = new ShadowClass[planes.length];
+			outside = new boolean[planes.length];
+		}
+		int halfWidth = resolutionWidth/2;
+		int halfHeight = resolutionHeight/2;
+		for (int i = 0; i < planes.length; i++) {
+			outside[i] = false;
+			if (culling && receivers != null && receivers.length == planes.length && !receivers[i]) {
+				// Never looked up
+				classes[i] = ShadowClass.PARTIAL;
+				continue;
+			}
+			// The same comparison as a lookup, over every texel the plane covers
+			int covered = 0;
+			int reached = 0;
+			int screenCount = projector.project(planes[i], momentDisplacement, momentOrientation, resolutionScalar, nearPlane, screenCenter);
+			Plane projectedPlane = projector.projected;
+			for (int k = 0; k < screenCount; k++) {
+				Plane screenPlane = projector.screens[k];
+				int yMin = screenPlane.getMinimum(1, 0, resolutionHeight);
+				int yMax = screenPlane.getMaximum(1, 0, resolutionHeight);
+				double[] lineData = screenPlane.getLineData();
+				for (int y = yMin; y < yMax; y++) {
+					int xIntercept0 = (int)((lineData[0]*y) + lineData[1]);
+					int xIntercept1 = (int)((lineData[2]*y) + lineData[3]);
+					int xMin = Math.min(Math.max(Math.min(xIntercept0, xIntercept1), 0), resolutionWidth);
+					int xMax = Math.max(Math.min(Math.max(xIntercept0, xIntercept1)+1, resolutionWidth), 0);
+					if (rowStarts != null) {
+						xMin = Math.max(xMin, rowStarts[y]);
+						xMax = Math.min(xMax, rowEnds[y]);
+					}
+					for (int x = xMin; x < xMax; x++) {
+						double z = projectedPlane.getDepthOfFlatPoint((double)(x - halfWidth), (double)(y - halfHeight));
+						if (rayDepths.reaches(rayDepths.index(x, y), z)) {
+							reached++;
 						}
 					}
+					covered += Math.max(xMax - xMin, 0);
 				}
 			}
+			if (covered == 0) {
+				// Nothing sampled says whether a plane on the map is lit, so its points are looked up
+				outside[i] = offMap(planes[i]);
+				classes[i] = outside[i] ? ShadowClass.SHADOWED : ShadowClass.PARTIAL;
+			} else if (reached == 0) {
+				classes[i] = ShadowClass.SHADOWED;
+			} else if (reached == covered) {
+				classes[i] = ShadowClass.LIT;
+			} else {
+				classes[i] = ShadowClass.PARTIAL;
+			}
 		}
+		classCount = planes.length;
 	}
 	
-	public double cast(Vector point) {
-		Vector orientedPoint = orientation.dot(point.subtract(displacement));
-		if (orientedPoint.get(2) > nearPlane) {
-			double radialDistance = orientedPoint.getMagnitude();
-			double[] orientedComps = orientedPoint.getComponents();
-			double pointScalar = resolutionScalar/orientedComps[2];
-			double[] perspectiveComps = new double[] {
-				orientedComps[0]*pointScalar, 
-		    orientedComps[1]*-pointScalar, 
-		    orientedComps[2]
-			};
-		  Vector perspectivePoint = new Vector(perspectiveComps);
-		  //double radialDistance = (Math.sqrt((perspectiveComps[0]*perspectiveComps[0])+
-		  //	(perspectiveComps[1]*perspectiveComps[1])))/resolutionScalar; RESERVED FOR SPOTLIGHT CLASS
-			
-			//perspectivePoint.print();
-			
-			perspectivePoint.selfAdd(screenCenter);
-			int x = (int) perspectivePoint.get(0);
-			int y = (int) perspectivePoint.get(1);
-			double z = perspectivePoint.get(2);
-			
-			//perspectivePoint.print();
+	// Whether the plane is behind the light or off one side of its map, so that every point casts 0.
+	// Planes too small to cover a texel cover none either, but may be lit or shadowed
+	private boolean offMap(Plane plane) {
+		double[] d = momentDisplacement.getComponents();
+		double[] u = momentOrientation.get(0).getComponents();
+		double[] v = momentOrientation.get(1).getComponents();
+		double[] w = momentOrientation.get(2).getComponents();
+		int front = 0;
+		int left = 0;
+		int right = 0;
+		int above = 0;
+		int below = 0;
+		for (Vector point:plane.points) {
+			double[] p = point.getComponents();
+			double relativeX = p[0] - d[0];
+			double relativeY = p[1] - d[1];
+			double relativeZ = p[2] - d[2];
+			double orientedZ = relativeX*w[0] + relativeY*w[1] + relativeZ*w[2];
+			if (orientedZ > nearPlane) {
+				double pointScalar = resolutionScalar/orientedZ;
+				double x = (relativeX*u[0] + relativeY*u[1] + relativeZ*u[2])*pointScalar + screenCenter.get(0);
+				double y = (relativeX*v[0] + relativeY*v[1] + relativeZ*v[2])*-pointScalar + screenCenter.get(1);
+				left += x < 0 ? 1 : 0;
+				right += x >= resolutionWidth ? 1 : 0;
+				above += y < 0 ? 1 : 0;
+				below += y >= resolutionHeight ? 1 : 0;
+				front++;
+			}
+		}
+		// Corners behind the light project anywhere once clipped, so only count planes wholly in front
+		return front == 0 || (front == 3 && (left == 3 || right == 3 || above == 3 || below == 3));
+	}
+	
+	public double cast(double pointX, double pointY, double pointZ) {
+		return cast(-1, pointX, pointY, pointZ);
+	}
+	
+	public double cast(int plane, double pointX, double pointY, double pointZ) {
+		ShadowClass shadowClass = getShadowClass(plane);
+		if (shadowClass == ShadowClass.SHADOWED) {
+			return 0;
+		}
+		// momentOrientation.dot(point.subtract(momentDisplacement)), without the vectors
+		double[] d = momentDisplacement.getComponents();
+		double[] i = momentOrientation.get(0).getComponents();
+		double[] j = momentOrientation.get(1).getComponents();
+		double[] k = momentOrientation.get(2).getComponents();
+		double relativeX = pointX - d[0];
+		double relativeY = pointY - d[1];
+		double relativeZ = pointZ - d[2];
+		double orientedX = relativeX*i[0] + relativeY*i[1] + relativeZ*i[2];
+		double orientedY = relativeX*j[0] + relativeY*j[1] + relativeZ*j[2];
+		double orientedZ = relativeX*k[0] + relativeY*k[1] + relativeZ*k[2];
+		if (orientedZ > nearPlane) {
+			double radialDistance = Math.sqrt(orientedX*orientedX + orientedY*orientedY + orientedZ*orientedZ);
+			double pointScalar = resolutionScalar/orientedZ;
+			int x = (int) (orientedX*pointScalar + screenCenter.get(0));
+			int y = (int) (orientedY*-pointScalar + screenCenter.get(1));
+			double z = orientedZ;
 			
 			if (x >= 0 && x <= resolutionWidth-1 && y >= 0 && y <= resolutionHeight-1) {
-				if (rayDepths[x][y] >= z || 
-						Math.max(
-							Math.max(rayDepths[Math.max(x-1,0)][y],
-								rayDepths[Math.min(x+1,resolutionWidth-1)][y]),
-							Math.max(rayDepths[x][Math.max(y-1,0)],
-								rayDepths[x][Math.min(y+1,resolutionHeight-1)])) >= z){
+				if (shadowClass == ShadowClass.LIT || rayDepths.reaches(x, y, z)) {
 		      return brightness/(radialDistance*radialDistance);
 				}
 			}
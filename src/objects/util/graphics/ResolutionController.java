@@ -0,0 +1,67 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+public class ResolutionController {
+	private double targetMillis;
+	private double minScale = 0.25;
+	private double maxScale = 1;
+	private double step = 1.0/16;
+	private int settleFrames = 10;
+	private double smoothing = 0.2;
+	// The smoothed frame time since the scale last changed, or -1 before the first frame at it
+	private double averageMillis = -1;
+	private double scale = 1;
+	private int framesAtScale;
+	public ResolutionController(double targetFPS) {
+		targetMillis = 1000/targetFPS;
+	}
+	
+	public void setScaleLimits(double min, double max) {
+		minScale = min;
+		maxScale = max;
+		scale = Math.min(Math.max(scale, minScale), maxScale);
+	}
+	
+	// How many frames to measure at a scale before changing it again
+	public void setSettleFrames(int frames) {
+		settleFrames = frames;
+	}
+	
+	public double getScale() {
+		return scale;
+	}
+	
+	public double getMaxScale() {
+		return maxScale;
+	}
+	
+	public double getAverageMillis() {
+		return averageMillis;
+	}
+	
+	// Takes the time the last frame took, returning the scale to render the next at. Frame time
+	// goes roughly with the pixels drawn, the square of the scale, so a slow view drops straight
+	// to the scale that should meet the target while a fast one climbs back a step at a time
+	public double update(double frameMillis) {
+		averageMillis = averageMillis < 0 ? frameMillis : averageMillis + smoothing*(frameMillis - averageMillis);
+		framesAtScale++;
+		if (framesAtScale < settleFrames) {
+			return scale;
+		}
+		double fitting = scale*Math.sqrt(targetMillis/averageMillis);
+		double next = scale;
+		if (averageMillis > targetMillis*1.05) {
+			next = Math.floor(fitting/step)*step;
+		} else if (averageMillis < targetMillis*0.8 && fitting >= scale + step) {
+			next = scale + step;
+		}
+		next = Math.min(Math.max(Math.round(next/step)*step, minScale), maxScale);
+		if (next != scale) {
+			scale = next;
+			framesAtScale = 0;
+			averageMillis = -1;
+		}
+		return scale;
+	}
+}
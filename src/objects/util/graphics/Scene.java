@@ -0,0 +1,14 @@
+package objects.util.graphics;
+
+import objects.util.graphics.geometry.*;
+
+public class Scene {
+	public Plane[] planes;
+	public Texture[] textures;
+	public Light[] lights;
+	public Scene(Plane[] planes, Texture[] textures, Light[] lights) {
+		this.planes = planes;
+		this.textures = textures;
+		this.lights = lights;
+	}
+}
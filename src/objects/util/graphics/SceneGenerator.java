@@ -0,0 +1,141 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.Random;
+
+import objects.util.graphics.geometry.*;
+
+public class SceneGenerator {
+	public enum SizeDistribution {FIXED, UNIFORM, LOG_NORMAL}
+	public enum LightType {PYRAMID, POINT, SPOT, DIRECTIONAL}
+	
+	private final long seed;
+	private int triangleCount = 1000;
+	private double minSize = 0.5;
+	private double maxSize = 2;
+	private SizeDistribution sizeDistribution = SizeDistribution.UNIFORM;
+	private double depthComplexity = 2;
+	private double minDepth = 5;
+	private double maxDepth = 60;
+	private double halfFOV = 0.785;
+	private int lightCount = 1;
+	private LightType lightType = LightType.PYRAMID;
+	private int shadowResolution = 256;
+	private double lightIntensity = 100;
+	public SceneGenerator(long seed) {
+		this.seed = seed;
+	}
+	
+	public void setTriangleCount(int count) {
+		triangleCount = count;
+	}
+	
+	// Edge length of the triangles in world units; FIXED uses maxSize, LOG_NORMAL centers on the geometric mean
+	public void setTriangleSize(double min, double max, SizeDistribution distribution) {
+		minSize = min;
+		maxSize = max;
+		sizeDistribution = distribution;
+	}
+	
+	// Average number of triangles behind each other along a view ray through the populated region
+	public void setDepthComplexity(double complexity) {
+		depthComplexity = complexity;
+	}
+	
+	public void setDepthRange(double near, double far) {
+		minDepth = near;
+		maxDepth = far;
+	}
+	
+	// The scene is laid out for a camera at the origin looking down +z with this field of view
+	public void setFieldOfView(double fov) {
+		halfFOV = fov/2;
+	}
+	
+	public void setLights(int count, LightType type) {
+		lightCount = count;
+		lightType = type;
+	}
+	
+	public void setShadowResolution(int resolution) {
+		shadowResolution = resolution;
+	}
+	
+	public void setLightIntensity(double intensity) {
+		lightIntensity = intensity;
+	}
+	
+	public Scene generate() {
+		Random random = new Random(seed);
+		Plane[] planes = new Plane[triangleCount];
+		Texture[] textures = new Texture[triangleCount];
+		
+		double[] sizes = new double[triangleCount];
+		double[] depths = new double[triangleCount];
+		double angularArea = 0;
+		for (int i = 0; i < triangleCount; i++) {
+			sizes[i] = nextSize(random);
+			depths[i] = minDepth + random.nextDouble()*(maxDepth - minDepth);
+			double angularSize = sizes[i]/depths[i];
+			angularArea += angularSize*angularSize/2;
+		}
+		// The triangles are spread over a square of the view plane just large enough that their
+		// projected areas add up to depthComplexity layers, but never wider than the field of view
+		double halfExtent = Math.min(Math.sqrt(angularArea/Math.max(depthComplexity, 0.001))/2, Math.tan(halfFOV));
+		
+		for (int i = 0; i < triangleCount; i++) {
+			double z = depths[i];
+			double x = (random.nextDouble()*2 - 1)*halfExtent*z;
+			double y = (random.nextDouble()*2 - 1)*halfExtent*z;
+			double size = sizes[i];
+			double angle = random.nextDouble()*2*Math.PI;
+			double tilt = (random.nextDouble() - 0.5)*size;
+			double[][] points = new double[3][];
+			for (int j = 0; j < 3; j++) {
+				double pointAngle = angle + j*2*Math.PI/3;
+				points[j] = new double[] {
+					x + Math.cos(pointAngle)*size/Math.sqrt(3), 
+					y + Math.sin(pointAngle)*size/Math.sqrt(3), 
+					z + (j - 1)*tilt
+				};
+			}
+			planes[i] = new Plane(points);
+			textures[i] = new ColorTexture(new double[] {random.nextDouble(), random.nextDouble(), random.nextDouble()}, random.nextDouble()*4, 1 + random.nextInt(50));
+		}
+		
+		Light[] lights = new Light[lightCount];
+		double lightSpread = Math.max(halfExtent*maxDepth, 1);
+		for (int i = 0; i < lightCount; i++) {
+			Vector position = new Vector(new double[] {
+				(random.nextDouble()*2 - 1)*lightSpread, 
+				lightSpread + random.nextDouble()*lightSpread, 
+				minDepth + random.nextDouble()*(maxDepth - minDepth)
+			});
+			double[] rgb = new double[] {0.5 + random.nextDouble()/2, 0.5 + random.nextDouble()/2, 0.5 + random.nextDouble()/2};
+			lights[i] = switch (lightType) {
+				case POINT -> new PointLight(shadowResolution, 0.2, 1000, rgb, lightIntensity, new Rotation(), position);
+				// Narrow beams aimed at triangles, as over a stage
+				case SPOT -> new SpotLight(shadowResolution, Math.toRadians(20), Math.toRadians(30), 0.2, 1000, rgb, lightIntensity, 
+						new Rotation(planes[random.nextInt(triangleCount)].points[0].subtract(position)), position);
+				// Shining from where the light would be towards the middle of the scene, as bright as a light there
+				case DIRECTIONAL -> new DirectionalLight(shadowResolution, rgb, lightIntensity/(lightSpread*lightSpread), 
+						new Rotation(new Vector(new double[] {0, 0, (minDepth + maxDepth)/2}).subtract(position)));
+				default -> new PyramidLight(shadowResolution, shadowResolution, Math.toRadians(120), 0.2, 1000, rgb, lightIntensity, new Rotation(Math.toRadians(90), 0), position);
+			};
+		}
+		return new Scene(planes, textures, lights);
+	}
+	
+	private double nextSize(Random random) {
+		return switch (sizeDistribution) {
+			case FIXED -> maxSize;
+			case UNIFORM -> minSize + random.nextDouble()*(maxSize - minSize);
+			case LOG_NORMAL -> {
+				// minSize and maxSize sit two standard deviations either side of the mean
+				double mean = (Math.log(minSize) + Math.log(maxSize))/2;
+				double deviation = (Math.log(maxSize) - Math.log(minSize))/4;
+				yield Math.min(Math.max(Math.exp(mean + random.nextGaussian()*deviation), minSize), maxSize);
+			}
+		};
+	}
+}
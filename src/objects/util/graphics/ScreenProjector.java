@@ -0,0 +1,83 @@
+package objects.util.graphics;
+
+import objects.util.graphics.geometry.*;
+
+public class ScreenProjector {
+	// Reused for every plane, so that projecting a scene does not allocate
+	public final Plane projected = new Plane();
+	public final Plane[] screens = new Plane[] {new Plane(), new Plane(), new Plane(), new Plane()};
+	private final Plane[] clips = new Plane[] {new Plane(), new Plane()};
+	private final Plane flat = new Plane();
+	
+	// The screen box and depths of the last plane bounded: x and y minimum and maximum, then z
+	// minimum and maximum. The box is infinite when a corner is behind the near plane
+	public final double[] bounds = new double[6];
+	
+	// Whether a world plane may reach the screen, from its corners alone. Planes that can't are
+	// either behind the near plane or wholly past one side of the screen, with a pixel of margin
+	public boolean bound(Plane worldPlane, Vector displacement, Rotation orientation, double resolutionScalar, double nearPlane, Vector screenCenter, int width, int height) {
+		double[] d = displacement.getComponents();
+		double[] i = orientation.get(0).getComponents();
+		double[] j = orientation.get(1).getComponents();
+		double[] k = orientation.get(2).getComponents();
+		double centerX = screenCenter.get(0);
+		double centerY = screenCenter.get(1);
+		int front = 0;
+		int left = 0;
+		int right = 0;
+		int above = 0;
+		int below = 0;
+		bounds[0] = Double.POSITIVE_INFINITY;
+		bounds[1] = Double.NEGATIVE_INFINITY;
+		bounds[2] = Double.POSITIVE_INFINITY;
+		bounds[3] = Double.NEGATIVE_INFINITY;
+		bounds[4] = Double.POSITIVE_INFINITY;
+		bounds[5] = Double.NEGATIVE_INFINITY;
+		for (Vector point:worldPlane.points) {
+			double[] p = point.getComponents();
+			double relativeX = p[0] - d[0];
+			double relativeY = p[1] - d[1];
+			double relativeZ = p[2] - d[2];
+			double x = (relativeX*i[0] + relativeY*i[1] + relativeZ*i[2])*resolutionScalar;
+			double y = -(relativeX*j[0] + relativeY*j[1] + relativeZ*j[2])*resolutionScalar;
+			double z = relativeX*k[0] + relativeY*k[1] + relativeZ*k[2];
+			// The sides of the screen are planes through the eye, so these hold behind it as well
+			left += x + (centerX + 1)*z < 0 ? 1 : 0;
+			right += x + (centerX - width - 1)*z > 0 ? 1 : 0;
+			above += y + (centerY + 1)*z < 0 ? 1 : 0;
+			below += y + (centerY - height - 1)*z > 0 ? 1 : 0;
+			if (z > nearPlane) {
+				front++;
+				bounds[0] = Math.min(bounds[0], x/z + centerX);
+				bounds[1] = Math.max(bounds[1], x/z + centerX);
+				bounds[2] = Math.min(bounds[2], y/z + centerY);
+				bounds[3] = Math.max(bounds[3], y/z + centerY);
+			}
+			bounds[4] = Math.min(bounds[4], z);
+			bounds[5] = Math.max(bounds[5], z);
+		}
+		if (front < 3) {
+			bounds[0] = Double.NEGATIVE_INFINITY;
+			bounds[1] = Double.POSITIVE_INFINITY;
+			bounds[2] = Double.NEGATIVE_INFINITY;
+			bounds[3] = Double.POSITIVE_INFINITY;
+		}
+		return front > 0 && left < 3 && right < 3 && above < 3 && below < 3;
+	}
+	
+	// Projects a world plane onto the screen, filling projected and screens, and returns how many
+	// screen planes were cut (0 when the plane can't be seen from here)
+	public int project(Plane worldPlane, Vector displacement, Rotation orientation, double resolutionScalar, double nearPlane, Vector screenCenter) {
+		worldPlane.subtract(displacement, projected).project(orientation, projected).scale(resolutionScalar, projected);
+		if (!projected.testForUnflattening()) {
+			return 0;
+		}
+		int clipCount = projected.clip(nearPlane, clips);
+		int screenCount = 0;
+		for (int j = 0; j < clipCount; j++) {
+			clips[j].flatten(flat).add(screenCenter, flat);
+			screenCount += flat.cut(screens, screenCount);
+		}
+		return screenCount;
+	}
+}
@@ -3,12 +3,33 @@ package objects.util.graphics;
 import objects.util.graphics.geometry.*;
 
 public abstract class Shader {
-	private double[][][] screenRGB;
-	public void reshape(double[][][] newScreenRGB) {
-		screenRGB = newScreenRGB;
+	// The frame drawn into, which every shader writes its pixels to
+	protected FrameBuffer frame;
+	public void reshape(FrameBuffer newFrame) {
+		frame = newFrame;
 	}
 
 	public abstract void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation);
 	
-	public abstract void draw(int x, int y, Vector point, Vector normal, double[] rgb, double gloss, int specularPower);
-}
\ No newline at end of file
+	// Preloads for lights whose shadow maps were already cast this frame, by a MultiView for every
+	// one of its views. Shaders that cast in preload leave that out here
+	public void preloadShared(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		preload(newPlanes, newLights, newCamLocation);
+	}
+	
+	// Whether the shadow maps preload casts are all as current as the scene. Dirty region
+	// tracking redraws the whole frame until they are
+	public boolean isSettled() {
+		return true;
+	}
+	
+	public abstract void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower);
+	
+	public void drawSpan(Span span, Vector normal, double[] rgb, double gloss, int specularPower) {
+		for (int i = 0; i < span.count; i++) {
+			if (span.visible[i]) {
+				draw(span.pixel + i, span.x[i], span.y[i], span.z[i], normal, rgb, gloss, specularPower);
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package objects.util.graphics;
+
+public enum ShadowClass {
+	// Some of the plane may be in shadow, so each point needs a shadow map lookup
+	PARTIAL,
+	// The plane holds every texel it covers, so no point inside the light is in shadow
+	LIT,
+	// The plane holds none of the texels it covers or lies outside the light, so every point is
+	SHADOWED
+}
@@ -0,0 +1,216 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+
+public class ShadowScheduler {
+	private long timeBudget = Long.MAX_VALUE;
+	private long triangleBudget = Long.MAX_VALUE;
+	private double motionWeight = 10;
+	// Every face of the lights last scheduled, with where it was when it was last cast
+	private Light[] lights = new Light[] {};
+	private Light[] faces = new Light[] {};
+	private double[][] castDisplacements;
+	private double[][] castDirections;
+	// The receivers each face's map was culled to, when it was
+	private boolean[] castCulled;
+	private boolean[][] castReceivers;
+	private int[] staleFrames;
+	// The faces not cast since the planes or faces last changed, going by a fingerprint of them
+	private boolean[] owed = new boolean[0];
+	private long fingerprint;
+	private double[] priorities;
+	private int[] order;
+	private int updated;
+	public ShadowScheduler() {}
+	
+	// Stops casting faces once this much of the frame has gone on them
+	public void setTimeBudget(double millis) {
+		timeBudget = (long)(millis*1000000);
+	}
+	
+	// Stops casting faces once they would rasterize more triangles than this between them
+	public void setTriangleBudget(long triangles) {
+		triangleBudget = triangles;
+	}
+	
+	// How much sooner a face that has moved is recast, per unit moved relative to its distance
+	public void setMotionWeight(double weight) {
+		motionWeight = weight;
+	}
+	
+	// The faces cast in the last update
+	public int getUpdated() {
+		return updated;
+	}
+	
+	// Whether every face has been cast since the planes or faces last changed, so that no map
+	// is left over from before. Anything redrawing only what changed has to redraw everything
+	// until it is
+	public boolean isSettled() {
+		for (boolean face:owed) {
+			if (face) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// Casts the faces that matter most to the view from camLocation until the budget runs out,
+	// leaving the rest with the maps of an earlier frame. At least one face is cast every frame,
+	// and faces never cast before go first, as do faces culled to receivers that leave out some
+	// of those the faces are given now
+	public void update(Plane[] planes, Light[] newLights, Vector camLocation) {
+		if (newLights != lights) {
+			schedule(newLights);
+		}
+		long newFingerprint = fingerprint(planes, faces);
+		if (newFingerprint != fingerprint) {
+			fingerprint = newFingerprint;
+			for (int i = 0; i < owed.length; i++) {
+				owed[i] = true;
+			}
+		}
+		double[] c = camLocation.getComponents();
+		for (int i = 0; i < faces.length; i++) {
+			staleFrames[i]++;
+			priorities[i] = culledAway(i, planes.length) ? Double.POSITIVE_INFINITY : priority(i, c);
+			order[i] = i;
+		}
+		// Faces are few, so an insertion sort by priority does without a comparator
+		for (int i = 1; i < order.length; i++) {
+			int face = order[i];
+			int j = i - 1;
+			while (j >= 0 && priorities[order[j]] < priorities[face]) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = face;
+		}
+		
+		long start = System.nanoTime();
+		long triangles = 0;
+		updated = 0;
+		for (int face:order) {
+			if (updated > 0 && (triangles + planes.length > triangleBudget || System.nanoTime() - start >= timeBudget)) {
+				break;
+			}
+			Light light = faces[face];
+			light.cast(planes);
+			triangles += planes.length;
+			updated++;
+			staleFrames[face] = 0;
+			owed[face] = false;
+			castDisplacements[face] = copy(light.displacement.getComponents(), castDisplacements[face]);
+			castDirections[face] = copy(light.orientation.get(2).getComponents(), castDirections[face]);
+			boolean[] receivers = light.getReceivers();
+			castCulled[face] = receivers != null && receivers.length == planes.length;
+			if (castCulled[face]) {
+				if (castReceivers[face] == null || castReceivers[face].length != receivers.length) {
+					castReceivers[face] = new boolean[receivers.length];
+				}
+				System.arraycopy(receivers, 0, castReceivers[face], 0, receivers.length);
+			}
+		}
+	}
+	
+	// A fingerprint of the planes' corners and of the lights, which changes whenever a cast of
+	// them might
+	static long fingerprint(Plane[] planes, Light[] lights) {
+		long fingerprint = planes.length;
+		for (Plane plane:planes) {
+			for (Vector point:plane.points) {
+				for (double component:point.getComponents()) {
+					fingerprint = 31*fingerprint + Double.doubleToLongBits(component);
+				}
+			}
+		}
+		for (Light light:lights) {
+			fingerprint = 31*fingerprint + light.fingerprint();
+		}
+		return fingerprint;
+	}
+	
+	private void schedule(Light[] newLights) {
+		lights = newLights;
+		int count = 0;
+		for (Light light:lights) {
+			count += light.getFaces().length;
+		}
+		faces = new Light[count];
+		count = 0;
+		for (Light light:lights) {
+			for (Light face:light.getFaces()) {
+				faces[count++] = face;
+			}
+		}
+		castDisplacements = new double[count][];
+		castDirections = new double[count][];
+		castCulled = new boolean[count];
+		castReceivers = new boolean[count][];
+		staleFrames = new int[count];
+		owed = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			owed[i] = true;
+		}
+		priorities = new double[count];
+		order = new int[count];
+	}
+	
+	// Whether the face's map left out casters that may shadow a plane it receives onto now
+	private boolean culledAway(int face, int planeCount) {
+		if (castDisplacements[face] == null || !castCulled[face]) {
+			return false;
+		}
+		boolean[] receivers = faces[face].getReceivers();
+		if (receivers == null || receivers.length != planeCount || receivers.length != castReceivers[face].length) {
+			return true;
+		}
+		for (int i = 0; i < receivers.length; i++) {
+			if (receivers[i] && !castReceivers[face][i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private double priority(int face, double[] c) {
+		if (castDisplacements[face] == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		Light light = faces[face];
+		double[] d = light.displacement.getComponents();
+		double[] k = light.orientation.get(2).getComponents();
+		double[] castD = castDisplacements[face];
+		double[] castK = castDirections[face];
+		// How much of the screen the lit area may cover, from the light's reach over its distance
+		double range = light.getRange();
+		double coverage = 1;
+		double distance = 0;
+		if (!light.isDirectional()) {
+			double toX = d[0] - c[0];
+			double toY = d[1] - c[1];
+			double toZ = d[2] - c[2];
+			distance = Math.sqrt(toX*toX + toY*toY + toZ*toZ);
+			coverage = Math.min(range*range/(distance*distance + 1), 1);
+		}
+		double movedX = d[0] - castD[0];
+		double movedY = d[1] - castD[1];
+		double movedZ = d[2] - castD[2];
+		double turnedX = k[0] - castK[0];
+		double turnedY = k[1] - castK[1];
+		double turnedZ = k[2] - castK[2];
+		double motion = Math.sqrt(movedX*movedX + movedY*movedY + movedZ*movedZ)/(distance + 1) +
+				Math.sqrt(turnedX*turnedX + turnedY*turnedY + turnedZ*turnedZ);
+		return staleFrames[face]*coverage*(1 + motionWeight*motion);
+	}
+	
+	private static double[] copy(double[] source, double[] target) {
+		if (target == null) {
+			return source.clone();
+		}
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+}
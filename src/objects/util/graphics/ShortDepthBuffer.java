@@ -0,0 +1,24 @@
+package objects.util.graphics;
+
+import java.util.Arrays;
+
+public class ShortDepthBuffer extends PackedDepthBuffer {
+	// Unsigned 16 bit codes
+	private final char[] codes;
+	public ShortDepthBuffer(int width, int height, DepthLayout layout, DepthEncoding encoding, double near, double far) {
+		super(width, height, layout, encoding, near, far, 16);
+		codes = new char[capacity];
+	}
+	
+	protected int code(int index) {
+		return codes[index];
+	}
+	
+	protected void store(int index, int code) {
+		codes[index] = (char) code;
+	}
+	
+	protected void fill(int code) {
+		Arrays.fill(codes, (char) code);
+	}
+}
@@ -0,0 +1,46 @@
+package objects.util.graphics;
+
+import objects.util.graphics.geometry.*;
+
+public abstract class SimdBackend {
+	public static final int MAX_LANES = 64;
+	private static final SimdBackend INSTANCE = load();
+	
+	// The Vector API backend, or null when jdk.incubator.vector is not in the boot layer (run with
+	// --add-modules jdk.incubator.vector) or is turned off with -Dobjects.util.graphics.simd=false
+	public static SimdBackend get() {
+		return INSTANCE;
+	}
+	
+	private static SimdBackend load() {
+		if (!Boolean.parseBoolean(System.getProperty("objects.util.graphics.simd", "true")) || 
+				ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return null;
+		}
+		try {
+			return (SimdBackend) Class.forName("objects.util.graphics.simd.VectorBackend").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+	
+	public abstract int lanes();
+	
+	// Each method works through whole vectors only and returns how many elements it covered,
+	// leaving the remainder of the span to the scalar path
+	
+	// Depth tests the row of a plane with depth method 3 from xStart to xStart + count against
+	// depths[offset...], writes the depths that pass, and fills span.depth and span.visible
+	// when span is not null
+	public abstract int depthSpan(Plane projectedPlane, int xStart, int count, double perspectiveY, double halfWidth, double bias, double[] depths, int offset, Span span);
+	
+	// The same for float depths, testing each depth once rounded to a float
+	public abstract int depthSpan(Plane projectedPlane, int xStart, int count, double perspectiveY, double halfWidth, double bias, float[] depths, int offset, Span span);
+	
+	// Fills span.x, span.y and span.z with the world positions of all the span's depths
+	public abstract void unproject(Span span, double perspectiveXStart, double perspectiveY, double reverseScalar, Rotation camOrientation, Vector camDisplacement);
+	
+	// Blinn-Phong shading of the visible fragments of a span, as in DirectShader.draw, into
+	// span.red, span.green and span.blue
+	public abstract int shade(Span span, Vector normal, double[] rgb, double gloss, int specularPower, Light[] lights, double ambience, Vector camLocation);
+}
@@ -0,0 +1,46 @@
+package objects.util.graphics;
+
+public class Span {
+	// One row of a triangle: pixel is the screen index of its first fragment, and every array is
+	// indexed from 0 to count - 1 along the row
+	public int pixel;
+	public int count;
+	public final double[] depth;
+	public final double[] x;
+	public final double[] y;
+	public final double[] z;
+	public final double[] attenuation;
+	public final boolean[] visible;
+	// Scratch rows for the SIMD backend
+	public final double[] coverage;
+	public final double[] specular;
+	public final double[] red;
+	public final double[] green;
+	public final double[] blue;
+	// The index of the plane being drawn, and its baked light if it has any
+	public int plane;
+	public Lightmap lightmap;
+	public SimdBackend backend;
+	// The rectangle of the screen being drawn, from (left, top) up to but not including (right,
+	// bottom), which rows are clipped to
+	public int left = 0;
+	public int top = 0;
+	public int right = Integer.MAX_VALUE;
+	public int bottom = Integer.MAX_VALUE;
+	public Span(int width) {
+		// Padded by a full vector so that SIMD loads and stores may run past count
+		int capacity = width + SimdBackend.MAX_LANES;
+		depth = new double[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		z = new double[capacity];
+		attenuation = new double[capacity];
+		visible = new boolean[capacity];
+		coverage = new double[capacity];
+		specular = new double[capacity];
+		red = new double[capacity];
+		green = new double[capacity];
+		blue = new double[capacity];
+		backend = SimdBackend.get();
+	}
+}
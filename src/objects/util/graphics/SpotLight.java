@@ -0,0 +1,70 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+import objects.util.graphics.geometry.*;
+
+public class SpotLight extends PyramidLight {
+	private double innerAngle;
+	private double outerAngle;
+	private double innerCosine;
+	private double outerCosine;
+	public SpotLight(int resolution, double innerAngle, double outerAngle, double minDistance, double maxDistance, double[] lightRGB, double intensity, Rotation originalOrientation, Vector originalDisplacement) {
+		// The square map just holds the outer cone, so only the circle inside it is ever looked up
+		super(resolution, resolution, outerAngle, minDistance, maxDistance, lightRGB, intensity, originalOrientation, originalDisplacement);
+		this.innerAngle = innerAngle;
+		this.outerAngle = outerAngle;
+		innerCosine = Math.cos(innerAngle/2);
+		outerCosine = Math.cos(outerAngle/2);
+		
+		// Rows of the circle, widened by the texel a lookup truncates into and the cross it compares
+		int[] rowStarts = new int[resolution];
+		int[] rowEnds = new int[resolution];
+		double center = resolution/2;
+		double radius = resolution/2.0 + 2;
+		for (int y = 0; y < resolution; y++) {
+			double offset = Math.min(Math.abs(y - center), Math.abs(y + 1 - center));
+			double halfChord = offset < radius ? Math.sqrt(radius*radius - offset*offset) : 0;
+			rowStarts[y] = Math.max((int)Math.floor(center - halfChord), 0);
+			rowEnds[y] = Math.min((int)Math.ceil(center + halfChord) + 1, resolution);
+		}
+		setRows(rowStarts, rowEnds);
+	}
+	
+	public long fingerprint() {
+		long fingerprint = super.fingerprint();
+		fingerprint = 31*fingerprint + Double.doubleToLongBits(innerAngle);
+		return 31*fingerprint + Double.doubleToLongBits(outerAngle);
+	}
+	
+	public SpotLight clone() {
+		SpotLight clone = new SpotLight(resolutionWidth, innerAngle, outerAngle, nearPlane, farPlane, rgb.clone(), brightness, orientation.clone(), displacement.clone());
+		copySettings(clone);
+		return clone;
+	}
+	
+	public double cast(int plane, double pointX, double pointY, double pointZ) {
+		// The angle to the axis of the cone the map was cast in rejects points outside it before
+		// they are projected
+		double[] d = momentDisplacement.getComponents();
+		double[] k = momentOrientation.get(2).getComponents();
+		double relativeX = pointX - d[0];
+		double relativeY = pointY - d[1];
+		double relativeZ = pointZ - d[2];
+		double orientedZ = relativeX*k[0] + relativeY*k[1] + relativeZ*k[2];
+		if (orientedZ <= 0) {
+			return 0;
+		}
+		double distanceSquared = relativeX*relativeX + relativeY*relativeY + relativeZ*relativeZ;
+		if (orientedZ*orientedZ < outerCosine*outerCosine*distanceSquared) {
+			return 0;
+		}
+		double cosine = orientedZ/Math.sqrt(distanceSquared);
+		if (cosine >= innerCosine) {
+			return super.cast(plane, pointX, pointY, pointZ);
+		}
+		// Smoothstep from the outer cone to the inner one
+		double t = (cosine - outerCosine)/(innerCosine - outerCosine);
+		return super.cast(plane, pointX, pointY, pointZ)*t*t*(3 - 2*t);
+	}
+}
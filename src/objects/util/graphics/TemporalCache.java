@@ -0,0 +1,253 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+import objects.util.graphics.geometry.*;
+
+public class TemporalCache extends Shader {
+	private final Shader shader;
+	private FrameBuffer previousFrame;
+	private int width;
+	private int height;
+	private int maxAge = 8;
+	// Per pixel of this frame and the last: the plane drawn there, the world point its color was
+	// shaded at, and how many frames that color has been carried over
+	private int[] planes = new int[0];
+	private float[] sampleX;
+	private float[] sampleY;
+	private float[] sampleZ;
+	private byte[] ages;
+	private int[] previousPlanes;
+	private float[] previousX;
+	private float[] previousY;
+	private float[] previousZ;
+	private byte[] previousAges;
+	// The view the last frame was drawn from, and whether its pixels may be reused at all
+	private final double[] view = new double[12];
+	private final double[] previousView = new double[12];
+	private double resolutionScalar;
+	private double previousScalar;
+	// The part of the frame each view was drawn into, which changes with the camera's scale
+	private int viewWidth;
+	private int viewHeight;
+	private int previousWidth;
+	private int previousHeight;
+	private boolean valid;
+	private boolean invalidated = true;
+	private long lightsFingerprint;
+	private int reused;
+	private int frameCount;
+	public TemporalCache(Shader cachedShader) {
+		shader = cachedShader;
+	}
+	
+	// How many frames a color may be carried over before it is shaded again
+	public void setMaxAge(int frames) {
+		maxAge = Math.min(Math.max(frames, 1), Byte.MAX_VALUE);
+	}
+	
+	// The fragments of the last frame that took their color from the one before
+	public int getReused() {
+		return reused;
+	}
+	
+	// Drops every pixel of the last frame, for when the scene changed in a way reprojection can't see
+	public void invalidate() {
+		invalidated = true;
+	}
+	
+	// Wraps a shader whose pixels mustn't be reused, such as the plain one for light sources, so
+	// that the planes it draws over are forgotten
+	public Shader uncached(Shader uncachedShader) {
+		return new Shader() {
+			public void reshape(FrameBuffer newFrame) {
+				uncachedShader.reshape(newFrame);
+			}
+			
+			public void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+				uncachedShader.preload(newPlanes, newLights, newCamLocation);
+			}
+			
+			public void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower) {
+				uncachedShader.draw(pixel, pointX, pointY, pointZ, normal, rgb, gloss, specularPower);
+				planes[pixel] = -1;
+			}
+			
+			public void drawSpan(Span span, Vector normal, double[] rgb, double gloss, int specularPower) {
+				for (int s = 0; s < span.count; s++) {
+					if (span.visible[s]) {
+						planes[span.pixel + s] = -1;
+					}
+				}
+				uncachedShader.drawSpan(span, normal, rgb, gloss, specularPower);
+			}
+		};
+	}
+	
+	public void reshape(FrameBuffer newFrame) {
+		super.reshape(newFrame);
+		shader.reshape(newFrame);
+	}
+	
+	// Starts a frame drawn into the top left newViewWidth by newViewHeight of newFrame from the
+	// given view, with the last one's colors in newPreviousFrame. What this frame stored becomes
+	// what the next one reuses, even where the two were drawn at different scales
+	public void begin(FrameBuffer newFrame, FrameBuffer newPreviousFrame, Rotation orientation, Vector displacement, double newResolutionScalar, int newViewWidth, int newViewHeight) {
+		reshape(newFrame);
+		previousFrame = newPreviousFrame;
+		if (newFrame.getWidth() != width || newFrame.getHeight() != height) {
+			width = newFrame.getWidth();
+			height = newFrame.getHeight();
+			int size = width*height;
+			planes = new int[size];
+			sampleX = new float[size];
+			sampleY = new float[size];
+			sampleZ = new float[size];
+			ages = new byte[size];
+			previousPlanes = new int[size];
+			previousX = new float[size];
+			previousY = new float[size];
+			previousZ = new float[size];
+			previousAges = new byte[size];
+			invalidated = true;
+		} else {
+			int[] swapPlanes = previousPlanes;
+			previousPlanes = planes;
+			planes = swapPlanes;
+			float[] swap = previousX;
+			previousX = sampleX;
+			sampleX = swap;
+			swap = previousY;
+			previousY = sampleY;
+			sampleY = swap;
+			swap = previousZ;
+			previousZ = sampleZ;
+			sampleZ = swap;
+			byte[] swapAges = previousAges;
+			previousAges = ages;
+			ages = swapAges;
+		}
+		valid = !invalidated;
+		invalidated = false;
+		// Only the rows drawn into are ever read back
+		Arrays.fill(planes, 0, Math.min(newViewHeight, height)*width, -1);
+		System.arraycopy(view, 0, previousView, 0, 12);
+		previousScalar = resolutionScalar;
+		for (int i = 0; i < 3; i++) {
+			System.arraycopy(orientation.get(i).getComponents(), 0, view, 3*i, 3);
+		}
+		System.arraycopy(displacement.getComponents(), 0, view, 9, 3);
+		resolutionScalar = newResolutionScalar;
+		previousWidth = viewWidth;
+		previousHeight = viewHeight;
+		viewWidth = newViewWidth;
+		viewHeight = newViewHeight;
+		reused = 0;
+		frameCount++;
+	}
+	
+	public void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		relight(newLights);
+		shader.preload(newPlanes, newLights, newCamLocation);
+	}
+	
+	public void preloadShared(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		relight(newLights);
+		shader.preloadShared(newPlanes, newLights, newCamLocation);
+	}
+	
+	// Any light that moved or changed relights every pixel
+	private void relight(Light[] newLights) {
+		long fingerprint = newLights.length;
+		for (Light light:newLights) {
+			fingerprint = 31*fingerprint + light.fingerprint();
+		}
+		if (fingerprint != lightsFingerprint) {
+			lightsFingerprint = fingerprint;
+			valid = false;
+		}
+	}
+	
+	public void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower) {
+		shader.draw(pixel, pointX, pointY, pointZ, normal, rgb, gloss, specularPower);
+		store(pixel, -1, pointX, pointY, pointZ, 0);
+	}
+	
+	public void drawSpan(Span span, Vector normal, double[] rgb, double gloss, int specularPower) {
+		// Fragments whose color carries over are written here and hidden from the shader, which
+		// shades the rest as it would without the cache
+		int shaded = 0;
+		for (int s = 0; s < span.count; s++) {
+			if (!span.visible[s]) {
+				continue;
+			}
+			int pixel = span.pixel + s;
+			// Every pixel is shaded afresh once every maxAge frames, each on a frame of its own, so that
+			// colors don't go stale while the view holds still
+			int hash = pixel*0x9E3779B9;
+			boolean due = ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % maxAge == frameCount % maxAge;
+			int source = valid && !due ? reproject(span.plane, span.x[s], span.y[s], span.z[s]) : -1;
+			if (source >= 0) {
+				frame.write(pixel, previousFrame.getRed(source), previousFrame.getGreen(source), previousFrame.getBlue(source));
+				planes[pixel] = span.plane;
+				sampleX[pixel] = previousX[source];
+				sampleY[pixel] = previousY[source];
+				sampleZ[pixel] = previousZ[source];
+				ages[pixel] = (byte)(previousAges[source] + 1);
+				span.visible[s] = false;
+				reused++;
+			} else {
+				store(pixel, span.plane, span.x[s], span.y[s], span.z[s], 0);
+				shaded++;
+			}
+		}
+		if (shaded > 0) {
+			shader.drawSpan(span, normal, rgb, gloss, specularPower);
+		}
+	}
+	
+	private void store(int pixel, int plane, double x, double y, double z, int age) {
+		planes[pixel] = plane;
+		sampleX[pixel] = (float)x;
+		sampleY[pixel] = (float)y;
+		sampleZ[pixel] = (float)z;
+		ages[pixel] = (byte)age;
+	}
+	
+	// The pixel of the last frame whose color may stand in for the point's: the one it lands on in
+	// the last view, if the same plane was drawn there from a sample within a pixel of the point,
+	// and that color isn't due to be shaded again. -1 when there is none
+	private int reproject(int plane, double x, double y, double z) {
+		double[] v = previousView;
+		double relativeX = x - v[9];
+		double relativeY = y - v[10];
+		double relativeZ = z - v[11];
+		double depth = relativeX*v[6] + relativeY*v[7] + relativeZ*v[8];
+		if (depth <= 0) {
+			return -1;
+		}
+		double scalar = previousScalar/depth;
+		double screenX = (relativeX*v[0] + relativeY*v[1] + relativeZ*v[2])*scalar + previousWidth/2;
+		double screenY = previousHeight/2 - (relativeX*v[3] + relativeY*v[4] + relativeZ*v[5])*scalar;
+		int column = (int)Math.floor(screenX + 0.5);
+		int row = (int)Math.floor(screenY + 0.5);
+		if (column < 0 || column >= previousWidth || row < 0 || row >= previousHeight) {
+			return -1;
+		}
+		int source = row*width + column;
+		if (previousPlanes[source] != plane || previousAges[source] + 1 >= maxAge) {
+			return -1;
+		}
+		// The footprint of a pixel at the point's depth in this view
+		double[] c = view;
+		double footprint = ((x - c[9])*c[6] + (y - c[10])*c[7] + (z - c[11])*c[8])/resolutionScalar;
+		double offsetX = previousX[source] - x;
+		double offsetY = previousY[source] - y;
+		double offsetZ = previousZ[source] - z;
+		if (offsetX*offsetX + offsetY*offsetY + offsetZ*offsetZ > footprint*footprint) {
+			return -1;
+		}
+		return source;
+	}
+}
@@ -4,5 +4,5 @@ import objects.util.graphics.geometry.*;
 
 public abstract class Texture {
 	public boolean ISLIGHTSOURCE;
-	public abstract void write(Plane screenPlane, Plane projectedPlane, Plane worldPlane, Rotation camOrientation, Vector camDisplacement, int width, int height, double resolutionScalar, double[][] zBuffer, Shader shader);
+	public abstract void write(Plane screenPlane, Plane projectedPlane, Plane worldPlane, Rotation camOrientation, Vector camDisplacement, int width, int height, double resolutionScalar, DepthBuffer zBuffer, Span span, Shader shader);
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+
+public class ToneCurve {
+	// Channels are looked up at this many steps from 0 to white, spaced by their square roots so
+	// that dark channels, where gamma spreads levels widest, get the finest steps
+	public static final int STEPS = 4096;
+	private final double gamma;
+	private final double white;
+	private final double stepScale;
+	private final int[] levels = new int[STEPS + 1];
+	private final double[] values = new double[256];
+	public ToneCurve(double gamma) {
+		this(gamma, 1);
+	}
+	
+	// Compresses channels from 0 to white into 0 to 1 before gamma, by extended Reinhard, so that
+	// bright light rolls off rather than clipping. A white of 1 clips at 1 like FrameBuffer.load
+	public ToneCurve(double gamma, double white) {
+		this.gamma = gamma;
+		this.white = Math.max(white, 1);
+		stepScale = 1/this.white;
+		for (int i = 0; i <= STEPS; i++) {
+			double step = (double) i/STEPS;
+			levels[i] = (int)(255*Math.pow(compress(step*step*this.white), 1/gamma));
+		}
+		// The middle of each level's range, so that a value read back packs to the same level
+		for (int level = 0; level < 256; level++) {
+			values[level] = expand(Math.pow(Math.min((level + 0.5)/255, 1), gamma));
+		}
+	}
+	
+	private double compress(double value) {
+		if (white == 1) {
+			return Math.min(value, 1);
+		}
+		return value*(1 + value/(white*white))/(1 + value);
+	}
+	
+	// The inverse of compress, the root of value^2/white^2 + (1 - t)value - t
+	private double expand(double t) {
+		if (white == 1) {
+			return t;
+		}
+		double a = 1/(white*white);
+		return (-(1 - t) + Math.sqrt((1 - t)*(1 - t) + 4*a*t))/(2*a);
+	}
+	
+	public double getGamma() {
+		return gamma;
+	}
+	
+	public double getWhite() {
+		return white;
+	}
+	
+	// The 8 bit level of a channel, clamped to white
+	public int level(double value) {
+		double scaled = value*stepScale;
+		return levels[scaled >= 1 ? STEPS : scaled > 0 ? (int)(Math.sqrt(scaled)*STEPS) : 0];
+	}
+	
+	public int pack(double red, double green, double blue) {
+		return (level(red) << 16) | (level(green) << 8) | level(blue);
+	}
+	
+	// The channel a level stands for, undoing the curve
+	public double value(int level) {
+		return values[level];
+	}
+}
@@ -0,0 +1,171 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+public class ToneMapper {
+	// The luminance histogram spans 2^-12 to 2^4 in bins of a quarter stop
+	private static final int BINS = 64;
+	private static final double MIN_LOG = -12;
+	private static final double MAX_LOG = 4;
+	private final ToneCurve curve;
+	private double exposure = 1;
+	private boolean adaptive;
+	private double key = 0.18;
+	private double adaptation = 0.1;
+	private double lowPercentile = 0.5;
+	private double highPercentile = 0.95;
+	private int sampling = 4;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean adapted;
+	private final int[] histogram = new int[BINS];
+	// Every band of rows is mapped on the pool at once, from the frame passed to map
+	private ExecutorService pool;
+	private final ArrayList<Callable<Object>> bands = new ArrayList<>();
+	private FrameBuffer frame;
+	private int[] pixels;
+	private int width;
+	private int height;
+	public ToneMapper(ToneCurve curve) {
+		this.curve = curve;
+	}
+	
+	public ToneCurve getCurve() {
+		return curve;
+	}
+	
+	// Scales every channel before the curve. Under adaptation, where it starts from
+	public void setExposure(double newExposure) {
+		exposure = newExposure;
+		adapted = false;
+	}
+	
+	public double getExposure() {
+		return exposure;
+	}
+	
+	// Exposes each frame so that the middle to bright part of its luminance averages out at key,
+	// moving rate of the way there, in stops, every frame after the first
+	public void setAdaptive(boolean enabled) {
+		adaptive = enabled;
+		adapted = false;
+	}
+	
+	public void setAdaptation(double newKey, double rate) {
+		key = newKey;
+		adaptation = rate;
+	}
+	
+	// The part of the histogram averaged, by the fraction of samples below each end
+	public void setPercentiles(double low, double high) {
+		lowPercentile = low;
+		highPercentile = high;
+	}
+	
+	// Samples luminance at every stride-th pixel of every stride-th row
+	public void setSampling(int stride) {
+		sampling = Math.max(stride, 1);
+	}
+	
+	public void setThreads(int count) {
+		threads = Math.max(count, 1);
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+	
+	// Packs the frame into pixels through the curve, band by band across the threads
+	public void map(FrameBuffer newFrame, int[] newPixels) {
+		map(newFrame, newPixels, newFrame.getWidth(), newFrame.getHeight());
+	}
+	
+	// Packs and adapts to just the top left newWidth by newHeight pixels of the frame, for a
+	// camera that renders into part of its buffers
+	public void map(FrameBuffer newFrame, int[] newPixels, int newWidth, int newHeight) {
+		if (adaptive) {
+			adapt(newFrame, newWidth, newHeight);
+		}
+		if (threads == 1 || newHeight < threads) {
+			newFrame.load(newPixels, 0, 0, newWidth, newHeight, exposure, curve);
+			return;
+		}
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			});
+			bands.clear();
+			for (int i = 0; i < threads; i++) {
+				int band = i;
+				bands.add(Executors.callable(() -> {
+					frame.load(pixels, 0, band*height/threads, width, (band + 1)*height/threads, exposure, curve);
+				}));
+			}
+		}
+		frame = newFrame;
+		pixels = newPixels;
+		width = newWidth;
+		height = newHeight;
+		try {
+			for (Future<Object> future:pool.invokeAll(bands)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while tone mapping", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Tone mapping failed", e.getCause());
+		} finally {
+			frame = null;
+			pixels = null;
+		}
+	}
+	
+	private void adapt(FrameBuffer frame, int width, int height) {
+		for (int i = 0; i < BINS; i++) {
+			histogram[i] = 0;
+		}
+		int stride = frame.getWidth();
+		int samples = 0;
+		for (int y = sampling/2; y < height; y += sampling) {
+			for (int x = sampling/2; x < width; x += sampling) {
+				int pixel = y*stride + x;
+				double luminance = 0.2126*frame.getRed(pixel) + 0.7152*frame.getGreen(pixel) + 0.0722*frame.getBlue(pixel);
+				// Pixels too dark to register, such as the background, don't pull exposure up
+				if (luminance > 0x1p-12) {
+					int bin = (int)((Math.log(luminance)/Math.log(2) - MIN_LOG)*BINS/(MAX_LOG - MIN_LOG));
+					histogram[Math.min(bin, BINS - 1)]++;
+					samples++;
+				}
+			}
+		}
+		if (samples == 0) {
+			return;
+		}
+		// The average log luminance of the samples between the percentiles, from bin centres
+		double low = samples*lowPercentile;
+		double high = samples*highPercentile;
+		double below = 0;
+		double sum = 0;
+		double counted = 0;
+		for (int bin = 0; bin < BINS; bin++) {
+			double from = Math.max(below, low);
+			double to = Math.min(below + histogram[bin], high);
+			if (to > from) {
+				sum += (to - from)*(MIN_LOG + (bin + 0.5)*(MAX_LOG - MIN_LOG)/BINS);
+				counted += to - from;
+			}
+			below += histogram[bin];
+		}
+		if (counted == 0) {
+			return;
+		}
+		double target = Math.log(key)/Math.log(2) - sum/counted;
+		double current = Math.log(exposure)/Math.log(2);
+		exposure = Math.pow(2, adapted ? current + (target - current)*adaptation : target);
+		adapted = true;
+	}
+}
@@ -17,6 +17,9 @@ import java.awt.event.InputEvent;
 import java.util.HashMap;
 import java.util.ArrayList;
 
+import objects.util.graphics.events.FrameEvent;
+import objects.util.graphics.events.PresentEvent;
+
 public class UserInterface extends Canvas implements Runnable, MouseListener, MouseMotionListener, MouseWheelListener, KeyListener {
 	
 	public int WIDTH;
@@ -32,6 +35,7 @@ public class UserInterface extends Canvas implements Runnable, MouseListener, Mo
 	private JFrame frame;
 	private long lastTime;
 	private long rate;
+	private long frameCount;
 	public ArrayList<InputEvent> events;
 		
 	public UserInterface(int width, int height) {
@@ -118,11 +122,14 @@ public class UserInterface extends Canvas implements Runnable, MouseListener, Mo
 			return;
 		}
 		
+		FrameEvent frameEvent = new FrameEvent();
+		frameEvent.begin();
 		WIDTH = frame.getWidth();
 		HEIGHT = frame.getHeight();
 		boolean changeScreen = false;
 
 		if (lastW != WIDTH || lastH != HEIGHT) {
+			changeScreen = true;
 			for (String key: items.keySet()) {
 				items.get(key).reshape(WIDTH, HEIGHT);
 			}
@@ -139,10 +146,29 @@ public class UserInterface extends Canvas implements Runnable, MouseListener, Mo
 			//System.out.println("ImageSource rendered");
 		}
 
+		PresentEvent presentEvent = new PresentEvent();
+		presentEvent.begin();
 		Graphics g = bs.getDrawGraphics();
 		g.drawImage(img, 0, 0, null);
 		g.dispose();
 		bs.show();
+		presentEvent.end();
+		frameEvent.end();
+		if (presentEvent.shouldCommit()) {
+			presentEvent.frame = frameCount;
+			presentEvent.width = WIDTH;
+			presentEvent.height = HEIGHT;
+			presentEvent.commit();
+		}
+		if (frameEvent.shouldCommit()) {
+			frameEvent.frame = frameCount;
+			frameEvent.width = WIDTH;
+			frameEvent.height = HEIGHT;
+			frameEvent.sources = renderOrder.size();
+			frameEvent.reshaped = changeScreen;
+			frameEvent.commit();
+		}
+		frameCount++;
 	}
 	
 	@Override
@@ -0,0 +1,201 @@
+package objects.util.graphics;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+import objects.util.graphics.geometry.*;
+
+public class VariableRateShader extends Shader {
+	private final Shader shader;
+	private final int rate;
+	private int specularLimit = 8;
+	private double tolerance = 1.0/255;
+	private int width;
+	private Light[] lights = new Light[] {};
+	// The fragments a span covered before they were split into samples and the rest
+	private boolean[] covered = new boolean[0];
+	private boolean[] samples = new boolean[0];
+	// The rate chosen for each rate by rate block of the frame this frame, and the plane that
+	// first drew into it. A block is shaded at full rate from the row another plane reaches into it
+	// or two of its samples can't be blended, and so for every row of it after
+	private static final byte UNTAGGED = 0;
+	private static final byte COARSE = 1;
+	private static final byte FULL = 2;
+	private int blocksWide;
+	private byte[] tags = new byte[0];
+	private int[] tagPlanes = new int[0];
+	private int shaded;
+	private int interpolated;
+	public VariableRateShader(Shader fullRateShader, int shadingRate) {
+		shader = fullRateShader;
+		rate = Math.max(shadingRate, 1);
+	}
+	
+	// Materials with sharper highlights than this specular power are shaded at full rate
+	public void setSpecularLimit(int power) {
+		specularLimit = power;
+	}
+	
+	// How far apart, in any channel, two samples may be for the fragments between to be blended
+	public void setTolerance(double channelTolerance) {
+		tolerance = channelTolerance;
+	}
+	
+	// The fragments shaded and blended in the frames since the counts were last reset
+	public int getShaded() {
+		return shaded;
+	}
+	
+	public int getInterpolated() {
+		return interpolated;
+	}
+	
+	public void resetCounts() {
+		shaded = 0;
+		interpolated = 0;
+	}
+	
+	public void reshape(FrameBuffer newFrame) {
+		super.reshape(newFrame);
+		width = newFrame.getWidth();
+		blocksWide = (width + rate - 1)/rate;
+		int blocks = blocksWide*((newFrame.getHeight() + rate - 1)/rate);
+		if (tags.length != blocks) {
+			tags = new byte[blocks];
+			tagPlanes = new int[blocks];
+		}
+		shader.reshape(newFrame);
+	}
+	
+	public void preload(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		lights = newLights;
+		Arrays.fill(tags, UNTAGGED);
+		shader.preload(newPlanes, newLights, newCamLocation);
+	}
+	
+	public void preloadShared(Plane[] newPlanes, Light[] newLights, Vector newCamLocation) {
+		lights = newLights;
+		Arrays.fill(tags, UNTAGGED);
+		shader.preloadShared(newPlanes, newLights, newCamLocation);
+	}
+	
+	public void draw(int pixel, double pointX, double pointY, double pointZ, Vector normal, double[] rgb, double gloss, int specularPower) {
+		shader.draw(pixel, pointX, pointY, pointZ, normal, rgb, gloss, specularPower);
+	}
+	
+	public void drawSpan(Span span, Vector normal, double[] rgb, double gloss, int specularPower) {
+		// Sharp highlights, and planes a shadow edge may cross anywhere, are shaded at full rate
+		if (rate == 1 || (gloss > 0 && specularPower > specularLimit) || partial(span)) {
+			shader.drawSpan(span, normal, rgb, gloss, specularPower);
+			for (int s = 0; s < span.count; s++) {
+				if (span.visible[s]) {
+					shaded++;
+				}
+			}
+			return;
+		}
+		if (covered.length < span.visible.length) {
+			covered = new boolean[span.visible.length];
+			samples = new boolean[span.visible.length];
+		}
+		// Samples fall on every rate-th screen column, at both ends of every run of covered
+		// fragments, so that blending never reaches across an edge or a nearer plane, and on every
+		// fragment of a block at full rate
+		int column = span.pixel % width;
+		int blockRow = span.pixel/width/rate*blocksWide;
+		int sampleCount = 0;
+		for (int s = 0; s < span.count; s++) {
+			covered[s] = span.visible[s];
+			samples[s] = false;
+			if (covered[s]) {
+				int block = blockRow + (column + s)/rate;
+				if (tags[block] == UNTAGGED) {
+					tags[block] = COARSE;
+					tagPlanes[block] = span.plane;
+				} else if (tagPlanes[block] != span.plane) {
+					tags[block] = FULL;
+				}
+				samples[s] = tags[block] == FULL || (column + s) % rate == 0 || s == 0 || !covered[s - 1] || s == span.count - 1 || !span.visible[s + 1];
+			}
+			span.visible[s] = samples[s];
+			if (samples[s]) {
+				sampleCount++;
+			}
+		}
+		shader.drawSpan(span, normal, rgb, gloss, specularPower);
+		shaded += sampleCount;
+		
+		// Between samples close enough in color and lit by the same lights throughout, fragments
+		// blend them; the rest, at shadow edges and highlights, are shaded in full, as is the rest
+		// of their block
+		int fullCount = 0;
+		int previous = -1;
+		for (int s = 0; s < span.count; s++) {
+			span.visible[s] = false;
+			if (!samples[s]) {
+				continue;
+			}
+			if (previous >= 0 && s - previous > 1 && covered[s - 1]) {
+				int from = span.pixel + previous;
+				int to = span.pixel + s;
+				double fromRed = frame.getRed(from);
+				double fromGreen = frame.getGreen(from);
+				double fromBlue = frame.getBlue(from);
+				double toRed = frame.getRed(to);
+				double toGreen = frame.getGreen(to);
+				double toBlue = frame.getBlue(to);
+				if (Math.abs(toRed - fromRed) <= tolerance && Math.abs(toGreen - fromGreen) <= tolerance && Math.abs(toBlue - fromBlue) <= tolerance && evenlyLit(span, previous, s)) {
+					double step = 1.0/(s - previous);
+					for (int between = previous + 1; between < s; between++) {
+						double t = (between - previous)*step;
+						frame.write(span.pixel + between, fromRed + t*(toRed - fromRed), fromGreen + t*(toGreen - fromGreen), fromBlue + t*(toBlue - fromBlue));
+					}
+					interpolated += s - previous - 1;
+				} else {
+					for (int between = previous + 1; between < s; between++) {
+						span.visible[between] = true;
+					}
+					fullCount += s - previous - 1;
+					tags[blockRow + (column + previous + 1)/rate] = FULL;
+				}
+			}
+			previous = s;
+		}
+		if (fullCount > 0) {
+			shader.drawSpan(span, normal, rgb, gloss, specularPower);
+			shaded += fullCount;
+		}
+		System.arraycopy(covered, 0, span.visible, 0, span.count);
+	}
+	
+	// Whether a shadow edge of any light that isn't baked may cross the span's plane, going by how
+	// the lights classified it. Lights that don't classify leave every plane partial
+	private boolean partial(Span span) {
+		for (Light light:lights) {
+			if ((span.lightmap == null || span.lightmap.indexOf(light) < 0) && light.getShadowClass(span.plane) == ShadowClass.PARTIAL) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// Whether every light reaches both samples or neither. On a plane no light is partial over, a
+	// shadow edge between them would have had to show at one of them
+	private boolean evenlyLit(Span span, int from, int to) {
+		for (Light light:lights) {
+			int baked = span.lightmap == null ? -1 : span.lightmap.indexOf(light);
+			if (attenuation(light, baked, span, from) > 0 != attenuation(light, baked, span, to) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// The attenuation a fragment is shaded with, from the lightmap for the lights baked into it
+	private static double attenuation(Light light, int baked, Span span, int s) {
+		if (baked < 0) {
+			return light.cast(span.plane, span.x[s], span.y[s], span.z[s]);
+		}
+		return span.lightmap.attenuation[baked][span.lightmap.texel(span.x[s], span.y[s], span.z[s])];
+	}
+}
@@ -0,0 +1,31 @@
+package objects.util.graphics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("objects.util.graphics.Frame")
+@Label("Frame")
+@Category({"Java Graphics", "Rendering"})
+@Description("One UserInterface frame, from reshaping its image sources to presenting the result")
+@StackTrace(false)
+public class FrameEvent extends Event {
+	@Label("Frame Number")
+	public long frame;
+	
+	@Label("Width")
+	public int width;
+	
+	@Label("Height")
+	public int height;
+	
+	@Label("Image Sources")
+	public int sources;
+	
+	@Label("Reshaped")
+	@Description("Whether the window size changed and every image source was reshaped this frame")
+	public boolean reshaped;
+}
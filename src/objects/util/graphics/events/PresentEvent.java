@@ -0,0 +1,24 @@
+package objects.util.graphics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("objects.util.graphics.Present")
+@Label("Present")
+@Category({"Java Graphics", "Rendering"})
+@Description("Blitting the UserInterface image to the screen and flipping the buffer strategy")
+@StackTrace(false)
+public class PresentEvent extends Event {
+	@Label("Frame Number")
+	public long frame;
+	
+	@Label("Width")
+	public int width;
+	
+	@Label("Height")
+	public int height;
+}
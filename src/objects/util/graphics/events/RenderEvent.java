@@ -0,0 +1,31 @@
+package objects.util.graphics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("objects.util.graphics.Render")
+@Label("Camera Render")
+@Category({"Java Graphics", "Rendering"})
+@Description("One Camera.render pass, including the shadow casts started by its shader")
+@StackTrace(false)
+public class RenderEvent extends Event {
+	@Label("Width")
+	public int width;
+	
+	@Label("Height")
+	public int height;
+	
+	@Label("Planes")
+	public int planes;
+	
+	@Label("Lights")
+	public int lights;
+	
+	@Label("Rasterized Planes")
+	@Description("Planes that survived unflattening and clipping and were written to the screen")
+	public int rasterized;
+}
@@ -0,0 +1,35 @@
+package objects.util.graphics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("objects.util.graphics.ShadowCast")
+@Label("Shadow Cast")
+@Category({"Java Graphics", "Shadows"})
+@Description("One Light.cast(Plane[]) shadow map build")
+@StackTrace(false)
+public class ShadowCastEvent extends Event {
+	@Label("Light Type")
+	public String light;
+	
+	@Label("Width")
+	public int width;
+	
+	@Label("Height")
+	public int height;
+	
+	@Label("Faces")
+	@Description("Number of shadow maps rebuilt by the cast")
+	public int faces;
+	
+	@Label("Planes")
+	public int planes;
+	
+	@Label("Rasterized Planes")
+	@Description("Planes that survived unflattening and clipping and were written to the shadow maps")
+	public int rasterized;
+}
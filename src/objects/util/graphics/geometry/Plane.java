@@ -7,13 +7,16 @@ import java.lang.Math;
  * This class exists to provide a tool that can calculate information about a plane in a 3D area from
  *     a 2D perspective.
  * 
- * Dependencies: Vector 1.3.3
+ * Dependencies: Vector 1.6.0, Rotation 1.5.0
  * 
  * <h2>Version Details</h2>
- * The last minor update corrected the depth finding of points, added plane clipping, and built safety mechanisms to help prevent NaN spreading.
+ * The last minor update added in-place variants of the plane operations, which write into a target Plane
+ *     instead of allocating one, so that a render loop can reuse the same scratch planes every frame.
+ *     The normal and line data are now computed when the plane is built and returned without copying,
+ *     so callers must treat them as read only, and the coefficients of the depth function are exposed for span rasterizers.
  * 
  * @author         Deegan Osmundson
- * @version        1.5.0-alpha
+ * @version        1.6.0-alpha
  * @since         2021-02-19
  */
 public class Plane {
@@ -26,6 +29,14 @@ public class Plane {
 	private double m;
 	private double n;
 	private double b;
+	private Vector normal;
+	private double[] lineData;
+	public Plane() {
+		// A blank plane to be used as the target of the in-place operations
+		points = new Vector[] {new Vector(), new Vector(), new Vector()};
+		build();
+	}
+	
 	public Plane(double[][] newPoints) {
 		// points[0-2] are a, b, c
 		points = Vector.toVector(newPoints);
@@ -70,6 +81,16 @@ public class Plane {
 		return new Plane(newPoints);
 	}
 	
+	public Plane add(Vector vector, Plane target) {
+		double[] v = vector.getComponents();
+		for (int i = 0; i < 3; i++) {
+			double[] p = points[i].getComponents();
+			target.points[i].set(p[0] + v[0], p[1] + v[1], p[2] + v[2]);
+		}
+		target.build();
+		return target;
+	}
+	
 	public Plane subtract(Vector vector) {
 		Vector[] newPoints = new Vector[3];
 		for (int i = 0; i < 3; i++) {
@@ -78,6 +99,16 @@ public class Plane {
 		return new Plane(newPoints);
 	}
 	
+	public Plane subtract(Vector vector, Plane target) {
+		double[] v = vector.getComponents();
+		for (int i = 0; i < 3; i++) {
+			double[] p = points[i].getComponents();
+			target.points[i].set(p[0] - v[0], p[1] - v[1], p[2] - v[2]);
+		}
+		target.build();
+		return target;
+	}
+	
 	public Plane project(Rotation bases) {
 		Vector[] newPoints = new Vector[3];
 		for (int i = 0; i < 3; i++) {
@@ -86,6 +117,25 @@ public class Plane {
 		return new Plane(newPoints);
 	}
 	
+	public Plane project(Rotation bases, Plane target) {
+		double[] i = bases.get(0).getComponents();
+		double[] j = bases.get(1).getComponents();
+		double[] k = bases.get(2).getComponents();
+		for (int index = 0; index < 3; index++) {
+			double[] p = points[index].getComponents();
+			double x = p[0];
+			double y = p[1];
+			double z = p[2];
+			target.points[index].set(
+				x*i[0] + y*i[1] + z*i[2], 
+				x*j[0] + y*j[1] + z*j[2], 
+				x*k[0] + y*k[1] + z*k[2]
+			);
+		}
+		target.build();
+		return target;
+	}
+	
 	public Plane[] clip(double nearPlaneZ) {
 		boolean[] inFrustrum = new boolean[3];
 		int pointsInFrustrumCount = 0;
@@ -142,6 +192,58 @@ public class Plane {
 		return clipPlanes;
 	}
 	
+	public int clip(double nearPlaneZ, Plane[] targets) {
+		// Same as clip(nearPlaneZ), but writes the clip planes into targets and returns how many there are
+		int pointsInFrustrumCount = 0;
+		int in0 = -1;
+		int in1 = -1;
+		int out0 = -1;
+		int out1 = -1;
+		for (int i = 0; i < 3; i++) {
+			if ((points[i].get(2) - nearPlaneZ) > 0) {
+				if (in0 < 0) {in0 = i;} else {in1 = i;}
+				pointsInFrustrumCount++;
+			} else {
+				if (out0 < 0) {out0 = i;} else {out1 = i;}
+			}
+		}
+		switch(pointsInFrustrumCount) {
+			case 1:
+				Plane clipPlane = targets[0];
+				clipPlane.points[in0].set(points[in0]);
+				interpolate(in0, out0, nearPlaneZ, clipPlane.points[out0]);
+				interpolate(in0, out1, nearPlaneZ, clipPlane.points[out1]);
+				clipPlane.build();
+				return 1;
+			case 2:
+				Plane first = targets[0];
+				Plane second = targets[1];
+				interpolate(in0, out0, nearPlaneZ, first.points[0]);
+				interpolate(in1, out0, nearPlaneZ, first.points[1]);
+				first.points[2].set(points[in0]);
+				first.build();
+				second.points[0].set(points[in0]);
+				second.points[1].set(points[in1]);
+				second.points[2].set(first.points[1]);
+				second.build();
+				return 2;
+			case 3:
+				targets[0].set(points[0], points[1], points[2]);
+				return 1;
+		}
+		return 0;
+	}
+	
+	private void interpolate(int inIndex, int outIndex, double nearPlaneZ, Vector target) {
+		double[] in = points[inIndex].getComponents();
+		double[] out = points[outIndex].getComponents();
+		double fromInX = out[0] - in[0];
+		double fromInY = out[1] - in[1];
+		double fromInZ = out[2] - in[2];
+		double scalar = Math.abs((in[2] - nearPlaneZ) / fromInZ);
+		target.set(fromInX*scalar + in[0], fromInY*scalar + in[1], fromInZ*scalar + in[2]);
+	}
+	
 	public Plane scale(double scalar) {
 		Vector[] newPoints = new Vector[3];
 		for (int i = 0; i < 3; i++) {
@@ -153,6 +255,15 @@ public class Plane {
 		return new Plane(newPoints);
 	}
 	
+	public Plane scale(double scalar, Plane target) {
+		for (int i = 0; i < 3; i++) {
+			double[] components = points[i].getComponents();
+			target.points[i].set(components[0]*scalar, components[1]*-scalar, components[2]);
+		}
+		target.build();
+		return target;
+	}
+	
 	public Plane flatten() {
 		Vector[] newPoints = new Vector[3];
 		for (int i = 0; i < 3; i++) {
@@ -165,6 +276,16 @@ public class Plane {
 		return new Plane(newPoints);
 	}
 	
+	public Plane flatten(Plane target) {
+		for (int i = 0; i < 3; i++) {
+			double[] components = points[i].getComponents();
+			double scalar = 1/(components[2]);
+			target.points[i].set(components[0]*scalar, components[1]*scalar, 1);
+		}
+		target.build();
+		return target;
+	}
+	
 	public Plane[] cut() {
 		if (ab[1] == ac[1]) {
 			return new Plane[] {this};
@@ -201,6 +322,86 @@ public class Plane {
 		}
 	}
 	
+	public int cut(Plane[] targets, int offset) {
+		// Same as cut(), but writes the cut planes into targets from offset on and returns how many there are
+		if (ab[1] == ac[1]) {
+			targets[offset].set(points[0], points[1], points[2]);
+			return 1;
+		} else if (ab[1] == 0) {
+			targets[offset].set(points[2], points[0], points[1]);
+			return 1;
+		} else if (ac[1] == 0) {
+			targets[offset].set(points[1], points[0], points[2]);
+			return 1;
+		} else {
+			Vector low = points[0];
+			Vector mid = points[1];
+			Vector high = points[2];
+			if (low.get(1) > mid.get(1)) {
+				Vector b = mid;
+				mid = low;
+				low = b;
+			}
+			if (mid.get(1) > high.get(1)) {
+				Vector b = mid;
+				mid = high;
+				high = b;
+			}
+			if (low.get(1) > mid.get(1)) {
+				Vector b = mid;
+				mid = low;
+				low = b;
+			}
+			double midY = mid.get(1);
+			double slope = (high.get(0)-low.get(0))/(high.get(1)-low.get(1));
+			double bias = high.get(0)-(slope*high.get(1));
+			Plane upper = targets[offset];
+			Plane lower = targets[offset + 1];
+			upper.points[0].set(high);
+			upper.points[1].set(mid);
+			upper.points[2].set((midY*slope)+bias, midY, 1);
+			upper.build();
+			lower.points[0].set(low);
+			lower.points[1].set(mid);
+			lower.points[2].set(upper.points[2]);
+			lower.build();
+			return 2;
+		}
+	}
+	
+	public void set(Vector a, Vector b, Vector c) {
+		points[0].set(a);
+		points[1].set(b);
+		points[2].set(c);
+		build();
+	}
+	
+	public int getMinimum(int index, int lower, int upper) {
+		// Same as getExtrema(index, limits)[0] without the arrays
+		double min = upper;
+		for (int i = 0; i < 3; i++) {
+			double p = points[i].get(index);
+			if (p < min) {
+				min = p;
+			}
+		}
+		if (min < lower) {min = lower;}
+		return (int)min;
+	}
+	
+	public int getMaximum(int index, int lower, int upper) {
+		// Same as getExtrema(index, limits)[1] without the arrays
+		double max = lower;
+		for (int i = 0; i < 3; i++) {
+			double p = points[i].get(index);
+			if (p > max) {
+				max = p;
+			}
+		}
+		if (max > upper) {max = upper;}
+		return (int)max;
+	}
+	
 	public int[] getExtrema(int index, int[] limits) {
 		double min = limits[1];
 		double max = limits[0];
@@ -236,8 +437,34 @@ public class Plane {
 	
 	public void build() {
 		displacement = points[0].getComponents();
-		ab = points[1].subtract(points[0]).getComponents();
-		ac = points[2].subtract(points[0]).getComponents();
+		if (ab == null) {
+			ab = new double[3];
+			ac = new double[3];
+			normal = new Vector();
+			lineData = new double[4];
+		}
+		double[] pB = points[1].getComponents();
+		double[] pC = points[2].getComponents();
+		for (int i = 0; i < 3; i++) {
+			ab[i] = pB[i] - displacement[i];
+			ac[i] = pC[i] - displacement[i];
+		}
+		
+		// Normal of ac cross ab
+		normal.set(
+			(ac[1] * ab[2]) - (ac[2] * ab[1]), 
+			(ac[2] * ab[0]) - (ac[0] * ab[2]), 
+			(ac[0] * ab[1]) - (ac[1] * ab[0])
+		);
+		normal.normalize();
+		
+		// Line data for a cut plane
+		double slopeAB = ab[0]/ab[1];
+		double slopeAC = ac[0]/ac[1];
+		lineData[0] = slopeAB;
+		lineData[1] = displacement[0] - (slopeAB*displacement[1]);
+		lineData[2] = slopeAC;
+		lineData[3] = displacement[0] - (slopeAC*displacement[1]);
 	}
 	
 	public Vector getPoint(double pAB, double pAC) {
@@ -249,8 +476,7 @@ public class Plane {
 	}
 	
 	public Vector getNormal() {
-		Vector normal = (new Vector(ac)).cross(new Vector(ab));
-		normal.normalize();
+		// The plane's own vector, rebuilt whenever the plane is, so callers must not modify it
 		return normal;
 	}
 	
@@ -354,8 +580,9 @@ public class Plane {
 			b = displacement[2] - m*displacement[0] - n*displacement[1];
 		} else {
 			depthMethod = 3;
-			double[] xAlign = new double[] {(ab[0]/ab[1])-(ac[0]/ac[1]), 0, (ab[2]/ab[1])-(ac[2]/ac[1])};
-			m = xAlign[2]/xAlign[0];
+			double xAlignX = (ab[0]/ab[1])-(ac[0]/ac[1]);
+			double xAlignZ = (ab[2]/ab[1])-(ac[2]/ac[1]);
+			m = xAlignZ/xAlignX;
 			n = (ab[2] - (m*ab[0]))/ab[1];
 			b = displacement[2] - m*displacement[0] - n*displacement[1];
 		}
@@ -375,12 +602,26 @@ public class Plane {
 	}
 	
 	public double[] getLineData() {
-		// for a cut plane
-		double slopeAB = ab[0]/ab[1];
-		double slopeAC = ac[0]/ac[1];
-		double biasAB = displacement[0] - (slopeAB*displacement[1]);
-		double biasAC = displacement[0] - (slopeAC*displacement[1]);
-		return new double[] {slopeAB, biasAB, slopeAC, biasAC};
+		// for a cut plane: {slopeAB, biasAB, slopeAC, biasAC}
+		// The plane's own array, rebuilt whenever the plane is, so callers must not modify it
+		return lineData;
+	}
+	
+	public byte getDepthMethod() {
+		// Method 3 is the common case, where getDepthOfFlatPoint is b/(1 - m*pxp - n*pyp)
+		return depthMethod;
+	}
+	
+	public double getDepthSlopeX() {
+		return m;
+	}
+	
+	public double getDepthSlopeY() {
+		return n;
+	}
+	
+	public double getDepthBias() {
+		return b;
 	}
 	
 	public double getDepthOfFlatPoint(double pxp, double pyp) {
@@ -10,14 +10,13 @@ package objects.util.graphics.geometry;
  *	normalization, inversion, rotation around a vector, cloning, and printing.</li>
  * </ul>
  * 
- * Dependencies: Vector 1.3.2
+ * Dependencies: Vector 1.6.0
  * 
  * <h2>Version Details</h2>
- * The last minor update integrated rotation of a Plane.
- * The last patch removed Vector dimension specification.
+ * The last minor update added copying another Rotation into this one without allocating.
  * 
  * @author 		Deegan Osmundson
- * @version		1.4.0
+ * @version		1.5.0
  * @since 		2020-12-22
  */
 public class Rotation {
@@ -229,6 +228,17 @@ public class Rotation {
 		normalize();
   }
 	
+	/**
+	 * This method copies the basis vectors of another Rotation into the basis vectors of this one.
+	 * Unlike clone, it reuses this Rotation's vectors, so it can take a snapshot without allocating.
+	 * @param rotation This is the Rotation whose bases are copied.
+	 */
+  public void set(Rotation rotation) {
+    for (int i = 0; i < 3; i++) {
+      bases[i].set(rotation.bases[i]);
+    }
+  }
+	
 	//GET METHODS
   public Vector get(int index) {
     return bases[index];
@@ -15,10 +15,11 @@ import java.lang.Math;
  * This class has no dependencies.
  * 
  * <h2>Version Details</h2>
- * In the last minor update, unnecessary processes and loops were removed.
+ * In the last minor update, component-wise setters that copy into the existing component array were
+ * 	added, so that scratch vectors can be reused without allocating.
  * 
  * @author 		Deegan Osmundson
- * @version		1.5.0
+ * @version		1.6.0
  * @since 		2021-1-15
  */
 public class Vector {
@@ -59,6 +60,18 @@ public class Vector {
     components = newComponents;
   }
   
+  public void set(double x, double y, double z) {
+    components[0] = x;
+    components[1] = y;
+    components[2] = z;
+  }
+  
+  public void set(Vector vector) {
+    components[0] = vector.components[0];
+    components[1] = vector.components[1];
+    components[2] = vector.components[2];
+  }
+  
   public void set(double newComponent, int index) {
     components[index] = newComponent;
   }
@@ -0,0 +1,200 @@
+package objects.util.graphics.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import objects.util.graphics.*;
+import objects.util.graphics.geometry.*;
+
+public class VectorBackend extends SimdBackend {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+	private static final DoubleVector IOTA = DoubleVector.zero(SPECIES).addIndex(1);
+	private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1);
+	private static final DoubleVector ZERO = DoubleVector.zero(SPECIES);
+	// Floats in the same number of lanes as the doubles, so depths convert between the two lane
+	// for lane, or null where there's no shape half as wide
+	private static final VectorSpecies<Float> FLOAT_SPECIES = floatSpecies();
+	private static final FloatVector FLOAT_ONE = FLOAT_SPECIES == null ? null : FloatVector.broadcast(FLOAT_SPECIES, 1);
+	private static final FloatVector FLOAT_ZERO = FLOAT_SPECIES == null ? null : FloatVector.zero(FLOAT_SPECIES);
+	
+	public int lanes() {
+		return LANES;
+	}
+	
+	public int depthSpan(Plane projectedPlane, int xStart, int count, double perspectiveY, double halfWidth, double bias, double[] depths, int offset, Span span) {
+		// Same operations, in the same order, as getDepthOfFlatPoint, so the depths match the scalar path exactly
+		double m = projectedPlane.getDepthSlopeX();
+		double ny = projectedPlane.getDepthSlopeY()*perspectiveY;
+		DoubleVector b = DoubleVector.broadcast(SPECIES, projectedPlane.getDepthBias());
+		int i = 0;
+		for (; i + LANES <= count; i += LANES) {
+			DoubleVector perspectiveX = IOTA.add(xStart + i - halfWidth);
+			// Adding a bias of 0 leaves every depth that can pass the test unchanged
+			DoubleVector z = b.div(ONE.sub(perspectiveX.mul(m)).sub(ny)).add(bias);
+			DoubleVector old = DoubleVector.fromArray(SPECIES, depths, offset + i);
+			VectorMask<Double> pass = z.lt(old).and(z.compare(VectorOperators.GT, 0)).and(z.eq(z));
+			// Blends and whole vector stores, since masked stores are not intrinsics on every JDK
+			old.blend(z, pass).intoArray(depths, offset + i);
+			if (span != null) {
+				z.intoArray(span.depth, i);
+				ZERO.blend(ONE, pass).intoArray(span.coverage, i);
+			}
+		}
+		if (span != null) {
+			for (int s = 0; s < i; s++) {
+				span.visible[s] = span.coverage[s] != 0;
+			}
+		}
+		return i;
+	}
+	
+	public int depthSpan(Plane projectedPlane, int xStart, int count, double perspectiveY, double halfWidth, double bias, float[] depths, int offset, Span span) {
+		if (FLOAT_SPECIES == null) {
+			return 0;
+		}
+		// Depths are computed as doubles, as for double depths, and tested once rounded as
+		// FloatDepthBuffer.test does
+		double m = projectedPlane.getDepthSlopeX();
+		double ny = projectedPlane.getDepthSlopeY()*perspectiveY;
+		DoubleVector b = DoubleVector.broadcast(SPECIES, projectedPlane.getDepthBias());
+		int i = 0;
+		for (; i + LANES <= count; i += LANES) {
+			DoubleVector perspectiveX = IOTA.add(xStart + i - halfWidth);
+			DoubleVector z = b.div(ONE.sub(perspectiveX.mul(m)).sub(ny)).add(bias);
+			FloatVector rounded = (FloatVector) z.convertShape(VectorOperators.D2F, FLOAT_SPECIES, 0);
+			FloatVector old = FloatVector.fromArray(FLOAT_SPECIES, depths, offset + i);
+			// A NaN depth fails both comparisons once rounded
+			VectorMask<Float> pass = rounded.lt(old).and(rounded.compare(VectorOperators.GT, 0));
+			old.blend(rounded, pass).intoArray(depths, offset + i);
+			if (span != null) {
+				z.intoArray(span.depth, i);
+				// Converted as a vector rather than cast as a mask, which isn't an intrinsic across shapes
+				((DoubleVector) FLOAT_ZERO.blend(FLOAT_ONE, pass).convertShape(VectorOperators.F2D, SPECIES, 0)).intoArray(span.coverage, i);
+			}
+		}
+		if (span != null) {
+			for (int s = 0; s < i; s++) {
+				span.visible[s] = span.coverage[s] != 0;
+			}
+		}
+		return i;
+	}
+	
+	public void unproject(Span span, double perspectiveXStart, double perspectiveY, double reverseScalar, Rotation camOrientation, Vector camDisplacement) {
+		double[] i = camOrientation.get(0).getComponents();
+		double[] j = camOrientation.get(1).getComponents();
+		double[] k = camOrientation.get(2).getComponents();
+		double[] d = camDisplacement.getComponents();
+		for (int s = 0; s < span.count; s += LANES) {
+			DoubleVector z = DoubleVector.fromArray(SPECIES, span.depth, s);
+			DoubleVector pointScalar = z.mul(reverseScalar);
+			DoubleVector projectedX = IOTA.add(perspectiveXStart + s).mul(pointScalar);
+			DoubleVector projectedY = pointScalar.neg().mul(perspectiveY);
+			projectedX.mul(i[0]).add(projectedY.mul(j[0])).add(z.mul(k[0])).add(d[0]).intoArray(span.x, s);
+			projectedX.mul(i[1]).add(projectedY.mul(j[1])).add(z.mul(k[1])).add(d[1]).intoArray(span.y, s);
+			projectedX.mul(i[2]).add(projectedY.mul(j[2])).add(z.mul(k[2])).add(d[2]).intoArray(span.z, s);
+		}
+	}
+	
+	public int shade(Span span, Vector normal, double[] rgb, double gloss, int specularPower, Light[] lights, double ambience, Vector camLocation) {
+		double[] n = normal.getComponents();
+		double[] c = camLocation.getComponents();
+		int s = 0;
+		for (; s + LANES <= span.count; s += LANES) {
+			boolean any = false;
+			for (int lane = s; lane < s + LANES; lane++) {
+				any |= span.visible[lane];
+			}
+			if (!any) {
+				continue;
+			}
+			DoubleVector pointX = DoubleVector.fromArray(SPECIES, span.x, s);
+			DoubleVector pointY = DoubleVector.fromArray(SPECIES, span.y, s);
+			DoubleVector pointZ = DoubleVector.fromArray(SPECIES, span.z, s);
+			DoubleVector camX = pointX.neg().add(c[0]);
+			DoubleVector camY = pointY.neg().add(c[1]);
+			DoubleVector camZ = pointZ.neg().add(c[2]);
+			DoubleVector camMagnitude = camX.mul(camX).add(camY.mul(camY)).add(camZ.mul(camZ)).sqrt();
+			camX = camX.div(camMagnitude);
+			camY = camY.div(camMagnitude);
+			camZ = camZ.div(camMagnitude);
+			// Light sums are kept in arrays rather than carried in vectors from light to light,
+			// which would box them on JDKs that cannot scalarize vectors across loop iterations
+			DoubleVector.broadcast(SPECIES, ambience).intoArray(span.red, s);
+			DoubleVector.broadcast(SPECIES, ambience).intoArray(span.green, s);
+			DoubleVector.broadcast(SPECIES, ambience).intoArray(span.blue, s);
+			for (Light light:lights) {
+				// Shadow map lookups are gathers, so they stay scalar
+				boolean lit = false;
+				for (int lane = s; lane < s + LANES; lane++) {
+					double attenuation = span.visible[lane] ? light.cast(span.plane, span.x[lane], span.y[lane], span.z[lane]) : 0;
+					span.attenuation[lane] = attenuation;
+					lit |= attenuation > 0;
+				}
+				if (!lit) {
+					continue;
+				}
+				DoubleVector attenuation = DoubleVector.fromArray(SPECIES, span.attenuation, s);
+				VectorMask<Double> active = attenuation.compare(VectorOperators.GT, 0);
+				DoubleVector rayX;
+				DoubleVector rayY;
+				DoubleVector rayZ;
+				if (light.isDirectional()) {
+					double[] k = light.orientation.get(2).getComponents();
+					rayX = DoubleVector.broadcast(SPECIES, -k[0]);
+					rayY = DoubleVector.broadcast(SPECIES, -k[1]);
+					rayZ = DoubleVector.broadcast(SPECIES, -k[2]);
+				} else {
+					double[] l = light.displacement.getComponents();
+					rayX = pointX.neg().add(l[0]);
+					rayY = pointY.neg().add(l[1]);
+					rayZ = pointZ.neg().add(l[2]);
+					DoubleVector rayMagnitude = rayX.mul(rayX).add(rayY.mul(rayY)).add(rayZ.mul(rayZ)).sqrt();
+					rayX = rayX.div(rayMagnitude);
+					rayY = rayY.div(rayMagnitude);
+					rayZ = rayZ.div(rayMagnitude);
+				}
+				DoubleVector diffuse = rayX.mul(n[0]).add(rayY.mul(n[1])).add(rayZ.mul(n[2])).abs();
+				DoubleVector halfX = camX.add(rayX);
+				DoubleVector halfY = camY.add(rayY);
+				DoubleVector halfZ = camZ.add(rayZ);
+				DoubleVector halfMagnitude = halfX.mul(halfX).add(halfY.mul(halfY)).add(halfZ.mul(halfZ)).sqrt();
+				halfX = halfX.div(halfMagnitude);
+				halfY = halfY.div(halfMagnitude);
+				halfZ = halfZ.div(halfMagnitude);
+				halfX.mul(n[0]).add(halfY.mul(n[1])).add(halfZ.mul(n[2])).abs().intoArray(span.specular, s);
+				for (int lane = s; lane < s + LANES; lane++) {
+					double specularDot = span.specular[lane];
+					double specular = 1;
+					for (int i = 0; i < specularPower; i++) {
+						specular *= specularDot;
+					}
+					span.specular[lane] = specular;
+				}
+				DoubleVector specular = DoubleVector.fromArray(SPECIES, span.specular, s);
+				// Unlit lanes add 0, which leaves their sums as they were
+				DoubleVector intensity = ZERO.blend(attenuation.mul(diffuse.add(specular.mul(gloss))), active);
+				DoubleVector.fromArray(SPECIES, span.red, s).add(intensity.mul(light.rgb[0])).intoArray(span.red, s);
+				DoubleVector.fromArray(SPECIES, span.green, s).add(intensity.mul(light.rgb[1])).intoArray(span.green, s);
+				DoubleVector.fromArray(SPECIES, span.blue, s).add(intensity.mul(light.rgb[2])).intoArray(span.blue, s);
+			}
+			DoubleVector.fromArray(SPECIES, span.red, s).mul(rgb[0]).intoArray(span.red, s);
+			DoubleVector.fromArray(SPECIES, span.green, s).mul(rgb[1]).intoArray(span.green, s);
+			DoubleVector.fromArray(SPECIES, span.blue, s).mul(rgb[2]).intoArray(span.blue, s);
+		}
+		return s;
+	}
+	
+	private static VectorSpecies<Float> floatSpecies() {
+		try {
+			return VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize()/2));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}